@@ -43,12 +43,14 @@ import com.wrq.rearranger.popup.LiveRearrangerDialog;
 import com.wrq.rearranger.popup.LiveRearrangerPopup;
 import com.wrq.rearranger.rearrangement.Mover;
 import com.wrq.rearranger.rearrangement.Parser;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
-import com.wrq.rearranger.util.CommentUtil;
 import java.awt.Window;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -62,7 +64,10 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 
 	private static final Logger logger = Logger.getInstance(LiveRearrangerActionHandler.class);
 
-	private static boolean inProgress;
+	/**
+	 * documents with a live rearrangement popup open; other documents may be rearranged meanwhile.
+	 */
+	private static final Set<Document> documentsInProgress = ConcurrentHashMap.newKeySet();
 
 	private static final boolean useDialog = true; // set to false for Popup
 
@@ -86,14 +91,20 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 			logger.debug("not a writable .java file -- skipping " + psiFile.getName());
 			return;
 		}
-		logger.debug("inProgress=" + inProgress);
+		logger.debug("inProgress=" + documentsInProgress.contains(document));
 		if (!useDialog) {
-			if (inProgress) {
+			if (!documentsInProgress.add(document)) {
 				return;
 			}
-			setInProgress(true);
 		}
-		buildLiveRearrangerData(project, document, psiFile, cursorOffset);
+		buildLiveRearrangerData(
+				project,
+				document,
+				psiFile,
+				cursorOffset,
+				editor.getSettings().getRightMargin(project),
+				editor.getSettings().getTabSize(project)
+		);
 	}
 
 	private static PsiFile getFile(Editor editor, DataContext context) {
@@ -106,9 +117,13 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 		return psiManager.findFile(virtualFile);
 	}
 
-	public static void setInProgress(boolean inProgress) {
+	public static void setInProgress(Document document, boolean inProgress) {
 		logger.debug("set inProgress=" + inProgress);
-		LiveRearrangerActionHandler.inProgress = inProgress;
+		if (inProgress) {
+			documentsInProgress.add(document);
+		} else {
+			documentsInProgress.remove(document);
+		}
 	}
 
 	/**
@@ -117,8 +132,11 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 	 * @param project
 	 * @param document
 	 * @param psiFile
+	 * @param rightMargin right margin of the editor, used to fill generated comments.
+	 * @param tabSize tab size of the editor.
 	 */
-	void buildLiveRearrangerData(Project project, Document document, PsiFile psiFile, int cursorOffset) {
+	void buildLiveRearrangerData(
+			Project project, Document document, PsiFile psiFile, int cursorOffset, int rightMargin, int tabSize) {
 		/**
 		 * Per instructions from IntelliJ, we have to commit any changes to the document to the Psi
 		 * tree.
@@ -131,6 +149,9 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 
 		settings.setAskBeforeRearranging(true);
 		settings.setRearrangeInnerClasses(true);
+
+		RearrangementContext context = new RearrangementContext(settings, rightMargin, tabSize);
+
 		if (useDialog) {
 			Application application = ApplicationManager.getApplication();
 
@@ -139,7 +160,7 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 
 						@Override
 						public void run() {
-							liveRearrangeDocument(project, psiFile, settings, document, cursorOffset);
+							liveRearrangeDocument(project, psiFile, settings, context, document, cursorOffset);
 						}
 
 					}
@@ -150,7 +171,7 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 				@Override
 				public void run() {
 					logger.debug("liveRearrangeDocument task started");
-					liveRearrangeDocument(project, psiFile, settings, document, cursorOffset);
+					liveRearrangeDocument(project, psiFile, settings, context, document, cursorOffset);
 				}
 
 			};
@@ -192,26 +213,25 @@ public class LiveRearrangerActionHandler extends EditorActionHandler {
 			Project project,
 			PsiFile psiFile,
 			RearrangerSettingsImplementation settings,
+			RearrangementContext context,
 			Document document,
 			int cursorOffset) {
 		logger.debug("enter liveRearrangeDocument on thread " + Thread.currentThread().getName());
 
-		new CommentUtil(settings); // create CommentUtil singleton
-
 		Window window = WindowManager.getInstance().suggestParentWindow(project);
 		ILiveRearranger fsp;
 
 		if (useDialog) {
-			fsp = new LiveRearrangerDialog(settings, psiFile, document, window, cursorOffset);
+			fsp = new LiveRearrangerDialog(settings, context, psiFile, document, window, cursorOffset);
 		} else {
-			fsp = new LiveRearrangerPopup(settings, psiFile, document, project, window, cursorOffset);
+			fsp = new LiveRearrangerPopup(settings, context, psiFile, document, project, window, cursorOffset);
 		}
 
-		Parser parser = new Parser(project, settings, psiFile);
+		Parser parser = new Parser(project, context, psiFile);
 		List<ClassContentsEntry> outerClasses = parser.parseOuterLevel();
 
 		if (!outerClasses.isEmpty()) {
-			Mover mover = new Mover(outerClasses, settings);
+			Mover mover = new Mover(outerClasses, context);
 			List<IRuleInstance> resultRuleInstances = mover.rearrangeOuterClasses();
 
 			fsp.setResultRuleInstances(resultRuleInstances);
@@ -186,16 +186,16 @@ public class ProjectTreeActionHandler extends AnAction {
 
 						Document document = dm.getDocument(psiFile);
 
-						application.runWriteAction(
-								() -> {
-									Rearranger rearranger = application.getService(Rearranger.class);
-									RearrangerSettings settings = rearranger.getState();
-
-									settings = settings.deepCopy();
-									// avoid showing confirmation dialog for each file done
-									settings.setAskBeforeRearranging(false);
-									rah.runWriteActionRearrangement(project, document, psiFile, settings);
-								}
+						Rearranger rearranger = application.getService(Rearranger.class);
+						RearrangerSettings settings = rearranger.getState().deepCopy();
+
+						// avoid showing confirmation dialog for each file done
+						settings.setAskBeforeRearranging(false);
+						rah.rearrangeFile(
+								project,
+								document,
+								psiFile,
+								RearrangerActionHandler.createContext(psiFile, settings)
 						);
 					}
 					if (!cancelled.value) {
@@ -21,6 +21,7 @@
  */
 package com.wrq.rearranger;
 
+import com.intellij.application.options.CodeStyle;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.actionSystem.DataContext;
 import com.intellij.openapi.application.Application;
@@ -33,21 +34,25 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.wm.WindowManager;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
 import com.intellij.psi.PsiManager;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
 import com.wrq.rearranger.entry.ClassContentsEntry;
 import com.wrq.rearranger.popup.FileStructurePopup;
 import com.wrq.rearranger.rearrangement.Emitter;
 import com.wrq.rearranger.rearrangement.Mover;
 import com.wrq.rearranger.rearrangement.Parser;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.rearrangement.Spacer;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.RearrangerSettings;
-import com.wrq.rearranger.util.CommentUtil;
+import com.wrq.rearranger.util.DocumentEdits;
 import java.awt.dnd.DragSource;
 
 import java.util.List;
@@ -64,18 +69,20 @@ public class RearrangerActionHandler extends EditorActionHandler {
 
 	private Logger logger = Logger.getInstance(getClass());
 
-	private static int rightMargin;
-
-	private static int tabSize;
-
 // -------------------------- STATIC METHODS --------------------------
 
-	public static int getRightMargin() {
-		return rightMargin;
-	}
+	/**
+	 * Creates the context for rearranging a file outside of an editor, taking right margin and tab size from the
+	 * file's code style.
+	 */
+	static RearrangementContext createContext(PsiFile psiFile, RearrangerSettings settings) {
+		CodeStyleSettings codeStyleSettings = CodeStyle.getSettings(psiFile);
 
-	public static int getTabSize() {
-		return tabSize;
+		return new RearrangementContext(
+				settings,
+				codeStyleSettings.getRightMargin(psiFile.getLanguage()),
+				codeStyleSettings.getTabSize(psiFile.getFileType())
+		);
 	}
 
 // -------------------------- OTHER METHODS --------------------------
@@ -96,19 +103,14 @@ public class RearrangerActionHandler extends EditorActionHandler {
 			logger.debug("not a writable .java file -- skipping " + psiFile.getName());
 			return;
 		}
-		rightMargin = editor.getSettings().getRightMargin(project);
-		tabSize = editor.getSettings().getTabSize(project);
+		int rightMargin = editor.getSettings().getRightMargin(project);
+		int tabSize = editor.getSettings().getTabSize(project);
 		logger.debug("right margin=" + rightMargin + ", tabSize=" + tabSize);
 
-		Application application = ApplicationManager.getApplication();
-
-		application.runWriteAction(() -> {
-					Rearranger rearranger = application.getService(Rearranger.class);
-					RearrangerSettings settings = rearranger.getState();
+		Rearranger rearranger = ApplicationManager.getApplication().getService(Rearranger.class);
+		RearrangerSettings settings = rearranger.getState();
 
-					runWriteActionRearrangement(project, document, psiFile, settings);
-				}
-		);
+		rearrangeFile(project, document, psiFile, new RearrangementContext(settings, rightMargin, tabSize));
 	}
 
 	private static PsiFile getFile(Editor editor, DataContext context) {
@@ -122,25 +124,57 @@ public class RearrangerActionHandler extends EditorActionHandler {
 	}
 
 	/**
-	 * must be called from within an IDEA write-action thread.
+	 * Rearranges and respaces the file.  The resulting text is determined before anything is written; if it is
+	 * identical to the current text, no write action or command is run and the document is left unmodified.
+	 * <p/>
+	 * must be called from the event dispatch thread, outside of any read or write action.
 	 */
-	void runWriteActionRearrangement(Project project, Document document, PsiFile psiFile, RearrangerSettings settings) {
+	void rearrangeFile(Project project, Document document, PsiFile psiFile, RearrangementContext context) {
+		if (psiFile == null ||
+				!isFileWritable(psiFile) ||
+				!psiFile.getName().endsWith(".java")) {
+			return;
+		}
 		/**
 		 * Per instructions from IntelliJ, we have to commit any changes to the document to the Psi
 		 * tree.
 		 */
 		final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
 		documentManager.commitDocument(document);
+		final Application application = ApplicationManager.getApplication();
+		final long modificationStamp = document.getModificationStamp();
+		final List<IRuleInstance> resultRuleInstances = application.runReadAction(
+				(Computable<List<IRuleInstance>>) () -> planRearrangement(project, psiFile, context)
+		);
+		/**
+		 * the popup is modal; it is shown between the two read actions so that no lock is held while the user
+		 * inspects the proposed rearrangement.
+		 */
+		final boolean rearrange = resultRuleInstances != null &&
+				(!context.getSettings().isAskBeforeRearranging() ||
+						new FileStructurePopup(context.getSettings(), resultRuleInstances, psiFile)
+								.displayRearrangement());
+		if (!psiFile.isValid() || document.getModificationStamp() != modificationStamp) {
+			logger.debug(psiFile.getName() + " changed while the rearrangement was displayed; not rearranged");
+			return;
+		}
+		final CharSequence newText = application.runReadAction(
+				(Computable<CharSequence>) () -> planRespacing(
+						project, psiFile, rearrange ? resultRuleInstances : null, context, document
+				)
+		);
+		if (newText == null) {
+			logger.debug("no changes to " + psiFile.getName() + "; document left unmodified");
+			return;
+		}
 		final WaitableBoolean wb = new WaitableBoolean();
-		if (psiFile != null &&
-				isFileWritable(psiFile) &&
-				psiFile.getName().endsWith(".java")) {
-			logger.debug("schedule rearranger task");
+		logger.debug("schedule rearranger task");
 
-			Runnable task = new RearrangerTask(project, psiFile, settings, document, wb);
+		Runnable task = new RearrangerTask(project, document, newText, wb);
 
-			CommandProcessor.getInstance().executeCommand(project, task, "Rearrange", null);
-		}
+		application.runWriteAction(
+				() -> CommandProcessor.getInstance().executeCommand(project, task, "Rearrange", null)
+		);
 		try {
 			logger.debug("wait for rearranger task to complete.");
 			wb.whenTrue();
@@ -156,36 +190,69 @@ public class RearrangerActionHandler extends EditorActionHandler {
 		return file != null && file.isWritable();
 	}
 
-	private void rearrangeDocument(Project project, PsiFile psiFile, RearrangerSettings settings, Document document) {
-		new CommentUtil(settings); // create CommentUtil singleton
-
-		Parser parser = new Parser(project, settings, psiFile);
+	/**
+	 * Parses the file and determines the rearranged order of its contents, without changing the document.
+	 *
+	 * @return rule instances holding the rearranged contents, or null if the file contains no classes.
+	 */
+	private List<IRuleInstance> planRearrangement(Project project, PsiFile psiFile, RearrangementContext context) {
+		Parser parser = new Parser(project, context, psiFile);
 		List<ClassContentsEntry> outerClasses = parser.parseOuterLevel();
 
-		if (!outerClasses.isEmpty()) {
-			Mover mover = new Mover(outerClasses, settings);
-			List<IRuleInstance> resultRuleInstances = mover.rearrangeOuterClasses();
+		if (outerClasses.isEmpty()) {
+			return null;
+		}
+		Mover mover = new Mover(outerClasses, context);
 
-			if (!settings.isAskBeforeRearranging() ||
-					new FileStructurePopup(settings, resultRuleInstances, psiFile).displayRearrangement()) {
-				Emitter emitter = new Emitter(psiFile, resultRuleInstances, document);
+		return mover.rearrangeOuterClasses();
+	}
 
-				emitter.emitRearrangedDocument();
-			}
+	/**
+	 * Determines the text of the rearranged and respaced document, without changing the document.
+	 *
+	 * @param resultRuleInstances rearranged contents of the file, or null if only spacing is to be adjusted.
+	 *
+	 * @return new text of the document, or null if rearranging and respacing would not change it.
+	 */
+	private CharSequence planRespacing(
+			Project project,
+			PsiFile psiFile,
+			List<IRuleInstance> resultRuleInstances,
+			RearrangementContext context,
+			Document document) {
+		CharSequence rearrangedText = null;
+
+		if (resultRuleInstances != null) {
+			Emitter emitter = new Emitter(psiFile, resultRuleInstances, document, context);
+
+			rearrangedText = emitter.emitRearrangedText();
+		}
+		/**
+		 * respace the rearranged text before it is written, so that the document is written and committed once.
+		 * Spacing depends on the rearranged structure (e.g. which member is now last in its class), so the rearranged
+		 * text is parsed into a non-physical copy of the file; if the order is unchanged, the current PSI describes
+		 * the text to be respaced.
+		 */
+		PsiFile spacedFile = psiFile;
+		if (rearrangedText != null) {
+			spacedFile = PsiFileFactory.getInstance(project).createFileFromText(
+					psiFile.getName(), psiFile.getLanguage(), rearrangedText, false, false
+			);
 		}
 		logger.debug("respacing document");
 
-		PsiDocumentManager.getInstance(project).commitDocument(document);
-		Spacer spacer = new Spacer(psiFile, document, settings);
+		Spacer spacer = new Spacer(spacedFile, context.getSettings());
 
-		if (spacer.respace()) {
-			PsiDocumentManager.getInstance(project).commitDocument(document);
-		}
-		logger.debug("exit rearrangeDocument");
+		return spacer.computeRespacing() ? spacer.getRespacedText() : rearrangedText;
 	}
 
-	public void setTabSize(int tabSize) {
-		RearrangerActionHandler.tabSize = tabSize;
+	/**
+	 * Replaces the document text with the planned text, already rearranged and respaced, and commits it.
+	 */
+	private void applyRearrangement(Project project, Document document, CharSequence newText) {
+		DocumentEdits.replace(document, 0, document.getTextLength(), newText);
+		PsiDocumentManager.getInstance(project).commitDocument(document);
+		logger.debug("exit applyRearrangement");
 	}
 
 // -------------------------- INNER CLASSES --------------------------
@@ -196,22 +263,18 @@ public class RearrangerActionHandler extends EditorActionHandler {
 
 		private Project project;
 
-		private PsiFile psiFile;
-
-		private RearrangerSettings settings;
-
 		private Document document;
 
+		private CharSequence newText;
+
 		private WaitableBoolean wb;
 
 // --------------------------- CONSTRUCTORS ---------------------------
 
-		RearrangerTask(
-				Project project, PsiFile psiFile, RearrangerSettings settings, Document document, WaitableBoolean wb) {
+		RearrangerTask(Project project, Document document, CharSequence newText, WaitableBoolean wb) {
 			this.project = project;
-			this.psiFile = psiFile;
-			this.settings = settings;
 			this.document = document;
+			this.newText = newText;
 			this.wb = wb;
 		}
 
@@ -222,7 +285,7 @@ public class RearrangerActionHandler extends EditorActionHandler {
 		@Override
 		public final void run() {
 			try {
-				rearrangeDocument(project, psiFile, settings, document);
+				applyRearrangement(project, document, newText);
 			} finally {
 				wb.set();
 			}
@@ -374,8 +374,7 @@ public class RearrangerSettingsPanel extends JPanel {
 	}
 
 	private String generateCommentPattern(RearrangerSettings settings) {
-		new CommentUtil(settings);
-		String result = RegexUtil.combineExpressions(CommentUtil.getCommentStrings());
+		String result = RegexUtil.combineExpressions(CommentUtil.createCommentStrings(settings));
 		return result;
 	}
 
@@ -23,6 +23,7 @@ package com.wrq.rearranger.entry;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.JavaTokenType;
 import com.intellij.psi.PsiAnonymousClass;
 import com.intellij.psi.PsiClass;
@@ -36,12 +37,10 @@ import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiModifier;
 import com.intellij.psi.PsiNewExpression;
 import com.intellij.psi.search.PsiSearchHelper;
-import com.intellij.psi.search.SearchScope;
-import com.intellij.psi.search.searches.OverridingMethodsSearch;
-import com.intellij.util.Query;
 import com.wrq.rearranger.ModifierConstants;
 import com.wrq.rearranger.rearrangement.Emitter;
 import com.wrq.rearranger.rearrangement.GenericRearranger;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.util.ModifierUtils;
@@ -49,7 +48,6 @@ import java.lang.reflect.Modifier;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 
 import javax.swing.JLabel;
@@ -68,10 +66,22 @@ public class ClassEntry extends ClassContentsEntry {
 
 	private List<IRuleInstance> resultRuleInstances;
 
-	private RearrangerSettings settings;
+	/**
+	 * original text range of the contents of this class, recorded before they are rearranged; null if there are none.
+	 */
+	private TextRange contentsRange;
+
+	private final RearrangementContext context;
+
+	private final RearrangerSettings settings;
 
 	private int nestingLevel;
 
+	/**
+	 * determines the method attributes requiring a search of the class hierarchy, shared by all methods of the class.
+	 */
+	private MethodAttributeResolver attributeResolver;
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
 	public ClassEntry(
@@ -81,11 +91,12 @@ public class ClassEntry extends ClassContentsEntry {
 			String modifierString,
 			String name,
 			int nestingLevel,
-			RearrangerSettings settings) {
+			RearrangementContext context) {
 		super(start, end, modifiers, modifierString, name, "");
 		contents = new ArrayList<ClassContentsEntry>();
 		resultRuleInstances = null;
-		this.settings = settings;
+		this.context = context;
+		settings = context.getSettings();
 		this.nestingLevel = nestingLevel;
 	}
 
@@ -163,20 +174,38 @@ public class ClassEntry extends ClassContentsEntry {
 	public void emit(Emitter emitter) {
 		// first emit the text up to and including the left brace.
 		super.emit(emitter);
-		// now emit all children.
-		emitter.emitRuleInstances(getResultRuleInstances());
+		// now emit all children.  If their arrangement reproduces the original text, it is copied as one block.
+		if (contentsRange != null) {
+			emitter.emitRuleInstances(
+					getResultRuleInstances(), contentsRange.getStartOffset(), contentsRange.getEndOffset()
+			);
+		} else {
+			emitter.emitRuleInstances(getResultRuleInstances());
+		}
 	}
 
-	protected void parseRemainingClassContents(Project project, int startingIndex, PsiElement psiClass) {
+	/**
+	 * Creates entries for the members of a class (or file), beginning with the child at the starting index.
+	 *
+	 * @param project
+	 * @param startingIndex index of the first child to parse
+	 * @param psiClass class or file whose contents are parsed
+	 * @param children children of psiClass, obtained once by the caller
+	 */
+	protected void parseRemainingClassContents(
+			Project project,
+			int startingIndex,
+			PsiElement psiClass,
+			PsiElement[] children) {
 		PsiSearchHelper psh = PsiSearchHelper.getInstance(project);
 		int lastIndex = startingIndex;
 		/**
 		 * if option indicates, don't parse inner class contents; leave them unchanged.
 		 */
 		if (settings.isRearrangeInnerClasses() || nestingLevel <= 1) {
-			for (int i = startingIndex; i < psiClass.getChildren().length; i++) {
-				PsiElement child = psiClass.getChildren()[i];
-				if (child instanceof PsiJavaToken && child.getText().equals("{")) {
+			for (int i = startingIndex; i < children.length; i++) {
+				PsiElement child = children[i];
+				if (child instanceof PsiJavaToken && ((PsiJavaToken) child).getTokenType() == JavaTokenType.LBRACE) {
 					lastIndex = i + 1; // first item of a class starts immediately after the class left brace.
 				}
 				logger.debug(psiClass.toString() + " child " + i + ":" + child.toString());
@@ -185,14 +214,14 @@ public class ClassEntry extends ClassContentsEntry {
 						child instanceof PsiClass ||
 						child instanceof PsiClassInitializer) {
 					MemberAttributes attributes = new MemberAttributes();
-					PsiElement startElement = psiClass.getChildren()[lastIndex];
+					PsiElement startElement = children[lastIndex];
 
 					ClassContentsEntry classContentsEntry = null;
 					if (child instanceof PsiField) {
-						i = parseField(child, attributes, i, (PsiClass) psiClass);
+						i = parseField(child, attributes, i, (PsiClass) psiClass, children);
 						// a field declaration with multiple fields like "int x, y;" must advance child to "y;"
 						// to prevent splitting.
-						child = psiClass.getChildren()[i];
+						child = children[i];
 						classContentsEntry = new FieldEntry(
 								startElement,
 								child,
@@ -203,7 +232,10 @@ public class ClassEntry extends ClassContentsEntry {
 						);
 					}
 					if (child instanceof PsiMethod) {
-						parseMethod(child, attributes, psh);
+						parseMethod(child, attributes);
+						if (attributeResolver == null) {
+							attributeResolver = new MethodAttributeResolver(psh, settings);
+						}
 						classContentsEntry = new MethodEntry(
 								startElement,
 								child,
@@ -212,7 +244,7 @@ public class ClassEntry extends ClassContentsEntry {
 								attributes.name,
 								attributes.type,
 								attributes.nParameters,
-								attributes.interfaceName
+								attributeResolver
 						);
 					}
 					if (child instanceof PsiClass) {
@@ -222,18 +254,19 @@ public class ClassEntry extends ClassContentsEntry {
 						// semicolon thereafter, if any.
 						//
 						PsiClass clazz = (PsiClass) child;
+						PsiElement[] clazzChildren = clazz.getChildren();
 						PsiElement clazzEnd;
 						int startElementIndex = 0;
 						if (clazz.isEnum()) {
 							// we want to skip all the enumeration fields, including terminating semicolon if present.
 							// class parsing begins after these.
-							startElementIndex = findLastEnumTerminator(clazz);
-							clazzEnd = clazz.getChildren()[startElementIndex];
+							startElementIndex = findLastEnumTerminator(clazz, clazzChildren);
+							clazzEnd = clazzChildren[startElementIndex];
 							startElementIndex++;
 						} else {
 							// normal class: parse everything after the left brace.
 							clazzEnd = clazz.getLBrace();
-							startElementIndex = Arrays.asList(clazz.getChildren()).indexOf(clazzEnd) + 1;
+							startElementIndex = Arrays.asList(clazzChildren).indexOf(clazzEnd) + 1;
 						}
 						ClassEntry entry = new ClassEntry(
 								startElement,
@@ -242,13 +275,14 @@ public class ClassEntry extends ClassContentsEntry {
 								attributes.modifierString,
 								attributes.name,
 								nestingLevel + 1,
-								settings
+								context
 						);
 						classContentsEntry = entry;
 						entry.parseRemainingClassContents(
 								project,
 								startElementIndex,
-								child
+								child,
+								clazzChildren
 						);
 					}
 					if (child instanceof PsiClassInitializer) {
@@ -262,28 +296,33 @@ public class ClassEntry extends ClassContentsEntry {
 						);
 					}
 					contents.add(classContentsEntry);
-					classContentsEntry.checkForComment();
+					classContentsEntry.checkForComment(context);
 					lastIndex = i + 1; // next class includes everything since the end of the prior class.
 				}
 			}
 		}
-		if (lastIndex < psiClass.getChildren().length) {
+		if (lastIndex < children.length) {
 			if (lastIndex < 0) {
 				lastIndex = 0;
 			}
 			// create a dummy trailer entry to cover anything after the last class.
 			MiscellaneousTextEntry miscellaneousTextEntry = new MiscellaneousTextEntry(
-					psiClass.getChildren()[lastIndex],
-					psiClass.getChildren()[psiClass.getChildren().length - 1],
+					children[lastIndex],
+					children[children.length - 1],
 					false, true
 			);
 
 			contents.add(miscellaneousTextEntry);
-			miscellaneousTextEntry.checkForComment();
+			miscellaneousTextEntry.checkForComment(context);
 		}
 	}
 
-	private int parseField(PsiElement child, MemberAttributes attributes, int i, final PsiClass psiClass) {
+	private int parseField(
+			PsiElement child,
+			MemberAttributes attributes,
+			int i,
+			final PsiClass psiClass,
+			final PsiElement[] children) {
 		attributes.field = (PsiField) child;
 		logger.debug("enter parseField: child=" +
 				(child == null ? "null" : child.toString()));
@@ -344,10 +383,10 @@ public class ClassEntry extends ClassContentsEntry {
 			);
 			logger.debug(
 					"parseField: psiClass children array length=" +
-							psiClass.getChildren().length
+							children.length
 			);
-			while (++i < psiClass.getChildren().length) {
-				myChild = psiClass.getChildren()[i];
+			while (++i < children.length) {
+				myChild = children[i];
 				logger.debug("parseField: myChild=" + myChild.toString());
 				if (myChild instanceof PsiField) {
 					done = true;
@@ -358,7 +397,7 @@ public class ClassEntry extends ClassContentsEntry {
 		return i;
 	}
 
-	private void parseMethod(PsiElement child, MemberAttributes attributes, final PsiSearchHelper psh) {
+	private void parseMethod(PsiElement child, MemberAttributes attributes) {
 		attributes.method = (PsiMethod) child;
 		attributes.name = attributes.method.getName();
 		if (attributes.method.getReturnTypeElement() == null) {
@@ -373,61 +412,15 @@ public class ClassEntry extends ClassContentsEntry {
 			// methods in an interface are always considered public
 			attributes.modifiers |= Modifier.PUBLIC;
 		}
-		// set any additional "modifier" flags.
-//        final Query<MethodSignatureBackedByPsiMethod> sm2 = SuperMethodsSearch.search(attributes.method,
-//                attributes.method.getContainingClass(), false, false);
-//        for (MethodSignatureBackedByPsiMethod msb : sm2) {
-//            System.out.println(msb.getMethod().getName());
-//        }                  // seems to be no different than method.findSuperMethods()
-
-		attributes.modifiers |= isCanonicalOrInterface(attributes.method, attributes);
-
-		SearchScope ss = psh.getUseScope(child);
-		Query<PsiMethod> query = OverridingMethodsSearch.search(attributes.method, ss, true);
-		PsiMethod method = query.findFirst();
-
-		if (method != null) {
-			Collection<PsiMethod> overridersCollection = query.findAll();
-			PsiMethod[] overriders = overridersCollection.toArray(new PsiMethod[overridersCollection.size()]);
-
-			logger.debug(
-					"method " +
-							attributes.method.toString() +
-							" is overridden; has " +
-							overriders.length + " overriding methods:"
-			);
-			dumpMethodNames(overriders);
-			if (attributes.method.getBody() == null) {
-				attributes.modifiers |= ModifierConstants.IMPLEMENTED;
-			} else {
-				attributes.modifiers |= ModifierConstants.OVERRIDDEN;
-			}
-		}
-		// determine if this method overrides another.
-		PsiMethod[] superMethods = attributes.method.findSuperMethods(false);
-
-		logger.debug("method " + attributes.method.toString() + " has " + superMethods.length + " supermethods");
-		dumpMethodNames(superMethods);
-		if (superMethods.length > 0) {
-			// determine if supermethod is abstract or interface; if so, assign IMPLEMENTING attribute.
-			PsiMethod superMethod = superMethods[0];
-			boolean abztract = superMethod.getModifierList().hasModifierProperty(PsiModifier.ABSTRACT);
-			PsiClass superclass = superMethod.getContainingClass();
-			if (abztract || superclass != null && superclass.isInterface()) {
-				attributes.modifiers |= ModifierConstants.IMPLEMENTING;
-			} else {
-				attributes.modifiers |= ModifierConstants.OVERRIDING;
-			}
-		}
 		if (attributes.method.isConstructor()) {
 			attributes.modifiers |= ModifierConstants.CONSTRUCTOR;
 		}
 		/** getter/setter cannot be determined here because definition of what a getter/setter
 		 * is can vary from rule to rule.  Do it at the time of rule matching.
+		 * The remaining flags (canonical or other method, overridden, overriding, ...) and the interface name
+		 * require searching the class hierarchy; they are determined by the MethodAttributeResolver when first
+		 * needed.
 		 */
-		else if ((attributes.modifiers & ModifierConstants.CANONICAL) == 0) {
-			attributes.modifiers |= ModifierConstants.OTHER_METHOD;
-		}
 		logger.debug(
 				"method " +
 						attributes.name +
@@ -436,64 +429,6 @@ public class ClassEntry extends ClassContentsEntry {
 		);
 	}
 
-	private int isCanonicalOrInterface(PsiMethod method, MemberAttributes attributes) {
-		PsiElement methodParent = method.getParent();
-		logger.debug("checking to see if " + method.getName() + " of " + methodParent + " is canonical");
-		PsiMethod[] superMethods = method.findSuperMethods();
-		logger.debug("result of findSuperMethods for " + method.getName() + ": size=" + superMethods.length);
-		// check to see if this method is canonical (inherited from Object).
-		for (PsiMethod m : superMethods) {
-			PsiElement parent = m.getParent();
-			logger.debug(
-					"supermethod " +
-							m.getName() +
-							" belongs to " +
-							parent
-			);
-			if (parent instanceof PsiClass) {
-				PsiClass psiClass = (PsiClass) parent;
-
-				if (psiClass.isInterface()) {
-					logger.debug("method " + method.toString() + " implements interface");
-					attributes.interfaceName = psiClass.getName();
-				}
-
-				PsiElement superclass = psiClass.getSuperClass();
-
-				if (superclass == null) {
-					// m's class must be java.lang.Object; it's the only class with a null
-					// superclass.
-					logger.debug("method " + method.toString() + " is canonical");
-					return ModifierConstants.CANONICAL;
-				} else {
-					int result = isCanonicalOrInterface(m, attributes);
-//                    int result = 0;
-//                    if (!superclass.toString().equalsIgnoreCase("psiclass:object"))
-//                    {
-//                        result = isCanonicalOrInterface(m, attributes);
-//                    }
-					if (result > 0) {
-						logger.debug("Returning result from canonical check as " + result);
-						return result;
-					}
-				}
-			}
-		}
-		return 0;
-	}
-
-	private void dumpMethodNames(PsiMethod[] methods) {
-		for (int j = 0; j < methods.length; j++) {
-			logger.debug(
-					j +
-							":" +
-							methods[j].toString() +
-							" of class " +
-							methods[j].getParent().toString()
-			);
-		}
-	}
-
 	private void parseClassAttributes(PsiElement child, MemberAttributes attributes) {
 		attributes.childClass = (PsiClass) child;
 		attributes.name = attributes.childClass.getName();
@@ -513,22 +448,25 @@ public class ClassEntry extends ClassContentsEntry {
 	 * point to the next item.  If no semicolon is found, we want to point to the enum's right brace.
 	 *
 	 * @param clazz
+	 * @param children children of clazz
 	 *
 	 * @return starting element index for the portion of the enumeration class following its enum declarations.
 	 */
-	private int findLastEnumTerminator(PsiClass clazz) {
+	private int findLastEnumTerminator(PsiClass clazz, PsiElement[] children) {
 		int startElementIndex = 0;
 		// go until we hit RBrace (non-inclusive), or semicolon (inclusive)
 		boolean foundLBrace = false;
-		for (int j = 0; j < clazz.getChildren().length; j++) {
-			PsiElement psiElement = clazz.getChildren()[j];
+		PsiElement lBrace = clazz.getLBrace();
+		PsiElement rBrace = clazz.getRBrace();
+		for (int j = 0; j < children.length; j++) {
+			PsiElement psiElement = children[j];
 			if (!foundLBrace) {
-				if (psiElement == clazz.getLBrace()) {
+				if (psiElement == lBrace) {
 					foundLBrace = true;
 				}
 			} else {
 				startElementIndex = j;
-				if (psiElement == clazz.getRBrace()) {
+				if (psiElement == rBrace) {
 					break;
 				}
 				if (psiElement instanceof PsiJavaToken &&
@@ -553,12 +491,19 @@ public class ClassEntry extends ClassContentsEntry {
 	 * rearranges the contents of this PsiClass according to supplied rules.
 	 */
 	public void rearrangeContents() {
+		if (!contents.isEmpty()) {
+			contentsRange = new TextRange(
+					contents.get(0).getStart().getTextRange().getStartOffset(),
+					contents.get(contents.size() - 1).getEnd().getTextRange().getEndOffset()
+			);
+		}
 		buildMethodCallGraph();
 
 		logger.debug("identifying setters and extracted (related) methods");
+		ClassMemberIndex index = new ClassMemberIndex(getContents());
 		for (ClassContentsEntry contentsEntry : getContents()) {
 			if (contentsEntry instanceof IRelatableEntry) {
-				((IRelatableEntry) contentsEntry).determineSettersAndMethodCalls(settings, getContents());
+				((IRelatableEntry) contentsEntry).determineSettersAndMethodCalls(settings, index);
 			}
 		}
 		logger.debug("relating extracted methods");
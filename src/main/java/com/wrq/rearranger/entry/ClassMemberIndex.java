@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.entry;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.wrq.rearranger.util.MethodUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the members of a single class, built once before the class contents are related to each other.  Maps each
+ * PsiMethod to its entry, and records the method names so that calls to methods of other classes can be dismissed
+ * without resolving them.  Also maps each property name to the fields, getters and setters for the property.
+ */
+public final class ClassMemberIndex {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private final Map<PsiMethod, MethodEntry> methodEntries;
+
+	private final Set<String> methodNames;
+
+	/**
+	 * getters and setters, in class order, keyed by property name as returned by MethodUtil.getPropertyName.
+	 */
+	private final Map<String, List<MethodEntry>> gettersSetters;
+
+	/**
+	 * fields, in class order, keyed by field name with its first letter capitalized (the property name).
+	 */
+	private final Map<String, List<FieldEntry>> fields;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	public ClassMemberIndex(List<ClassContentsEntry> contents) {
+		methodEntries = new IdentityHashMap<>(contents.size() * 2);
+		methodNames = new HashSet<>(contents.size() * 2);
+		gettersSetters = new HashMap<>();
+		fields = new HashMap<>();
+		for (ClassContentsEntry entry : contents) {
+			if (entry instanceof MethodEntry) {
+				MethodEntry methodEntry = (MethodEntry) entry;
+				PsiMethod method = (PsiMethod) methodEntry.end;
+				methodEntries.put(method, methodEntry);
+				methodNames.add(method.getName());
+				if (methodEntry.isGetter() || methodEntry.isSetter()) {
+					add(gettersSetters, MethodUtil.getPropertyName(method), methodEntry);
+				}
+			} else if (entry instanceof FieldEntry) {
+				String name = entry.getName();
+				if (name.length() > 0) {
+					add(fields, Character.toUpperCase(name.charAt(0)) + name.substring(1), (FieldEntry) entry);
+				}
+			}
+		}
+	}
+
+// -------------------------- STATIC METHODS --------------------------
+
+	private static <T> void add(Map<String, List<T>> map, String key, T entry) {
+		map.computeIfAbsent(key, k -> new ArrayList<T>(2)).add(entry);
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * @param name name of a method, as referenced by a method call expression
+	 *
+	 * @return true if some method of the class has this name, i.e. a call by this name could be to a method in the
+	 * class.
+	 */
+	public boolean hasMethodNamed(String name) {
+		return methodNames.contains(name);
+	}
+
+	/**
+	 * @param element resolved target of a method call
+	 *
+	 * @return the entry for the method in this class, or null if the element is not a method of this class.
+	 */
+	public MethodEntry getMethodEntry(PsiElement element) {
+		return methodEntries.get(element);
+	}
+
+	/**
+	 * @param property property name, e.g. "Name" for getName()
+	 *
+	 * @return the methods of the class which were getters or setters for the property when the index was built, in
+	 * class order.
+	 */
+	public List<MethodEntry> getGettersSetters(String property) {
+		List<MethodEntry> result = gettersSetters.get(property);
+		return result == null ? Collections.<MethodEntry>emptyList() : result;
+	}
+
+	/**
+	 * @param property property name, e.g. "Name" for field "name"
+	 *
+	 * @return the fields of the class for the property, in class order.
+	 */
+	public List<FieldEntry> getFields(String property) {
+		List<FieldEntry> result = fields.get(property);
+		return result == null ? Collections.<FieldEntry>emptyList() : result;
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.entry;
+
+/**
+ * Kinds of entries, as bit flags.  Each entry is of exactly one kind; each rule declares a mask of the kinds of entry
+ * it can possibly match, so that rule matching can skip rules which cannot apply to an entry.
+ */
+public final class EntryKind {
+
+// ------------------------------ FIELDS ------------------------------
+
+	public static final int NONE = 0;
+
+	public static final int FIELD = 0x1;
+
+	public static final int METHOD = 0x2;
+
+	/**
+	 * a method which implements an interface method.
+	 */
+	public static final int INTERFACE_METHOD = 0x4;
+
+	public static final int INITIALIZER = 0x8;
+
+	/**
+	 * classes, and miscellaneous (header or trailer) text.
+	 */
+	public static final int OTHER = 0x10;
+
+	public static final int ALL = FIELD | METHOD | INTERFACE_METHOD | INITIALIZER | OTHER;
+
+	public static final int N_KINDS = 5;
+
+// -------------------------- STATIC METHODS --------------------------
+
+	/**
+	 * @param kind a single entry kind.
+	 *
+	 * @return index of the kind, from 0 to N_KINDS - 1.
+	 */
+	public static int indexOf(int kind) {
+		return Integer.numberOfTrailingZeros(kind);
+	}
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	private EntryKind() {
+	}
+
+}
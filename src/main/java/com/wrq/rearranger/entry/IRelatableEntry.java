@@ -24,8 +24,6 @@ package com.wrq.rearranger.entry;
 import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.RelatedMethodsSettings;
 
-import java.util.List;
-
 /**
  * Defines methods implemented by entries which may be related to others, i.e. getters and setters, method entries which
  * call other methods, and overloaded method entries.
@@ -50,9 +48,9 @@ public interface IRelatableEntry {
 	 * Determine corresponding setters for getters and identify related methods.
 	 *
 	 * @param settings current settings, containing extracted/related method options.
-	 * @param contents contents of class, containing potentially related methods.
+	 * @param index index of the members of the class, containing potentially related methods.
 	 */
-	void determineSettersAndMethodCalls(RearrangerSettings settings, List<ClassContentsEntry> contents);
+	void determineSettersAndMethodCalls(RearrangerSettings settings, ClassMemberIndex index);
 
 	/**
 	 * @return true if the method is a setter and will be emitted below a corresponding getter.
@@ -37,8 +37,6 @@ public class MemberAttributes {
 
 	String type = "";
 
-	String interfaceName;
-
 	PsiField field;
 
 	PsiMethod method;
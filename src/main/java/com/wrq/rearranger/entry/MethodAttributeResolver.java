@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.entry;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.search.PsiSearchHelper;
+import com.intellij.psi.search.PsiSearchScopeUtil;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.search.searches.ClassInheritorsSearch;
+import com.intellij.psi.util.MethodSignatureUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.wrq.rearranger.ModifierConstants;
+import com.wrq.rearranger.settings.RearrangerSettings;
+import com.wrq.rearranger.settings.attributeGroups.AttributeGroup;
+import com.wrq.rearranger.settings.attributeGroups.InterfaceAttributes;
+import com.wrq.rearranger.settings.attributeGroups.MethodAttributes;
+import com.wrq.rearranger.util.SuperMethodCache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Determines the method attributes which require searching the class hierarchy: the canonical, other method,
+ * overridden, implemented, overriding and implementing flags and the name of an implemented interface.  Only the
+ * attributes which some configured rule can observe are determined, and only when a method's attributes are first
+ * accessed.  One resolver is shared by all methods of a class, so that the inheritors of the class are searched at
+ * most once.
+ */
+final class MethodAttributeResolver {
+
+// ------------------------------ FIELDS ------------------------------
+
+	/**
+	 * CANONICAL or OTHER_METHOD flag.
+	 */
+	static final int CANONICAL = 0x1;
+
+	/**
+	 * name of the interface a method implements.
+	 */
+	static final int INTERFACE = 0x2;
+
+	/**
+	 * OVERRIDDEN and IMPLEMENTED flags; these require a search for inheritors of the class.
+	 */
+	static final int OVERRIDDEN = 0x4;
+
+	/**
+	 * OVERRIDING and IMPLEMENTING flags.
+	 */
+	static final int OVERRIDING = 0x8;
+
+	private static final Logger logger = Logger.getInstance(MethodAttributeResolver.class);
+
+	private final PsiSearchHelper psh;
+
+	private final int requiredAttributes;
+
+	/**
+	 * inheritors of each class whose methods have been resolved; each class is searched for once, when one of its
+	 * methods first needs them.
+	 */
+	private final Map<PsiClass, Collection<PsiClass>> inheritors = new HashMap<PsiClass, Collection<PsiClass>>();
+
+// -------------------------- STATIC METHODS --------------------------
+
+	/**
+	 * Determine which of the attributes determined by a resolver can be observed by the configured rules.  The
+	 * getter/setter status and call graph are not included here; they are governed by the related method and
+	 * getter/setter options and are determined on demand by the method entries themselves.
+	 *
+	 * @param settings current configuration
+	 *
+	 * @return combination of CANONICAL, INTERFACE, OVERRIDDEN and OVERRIDING.
+	 */
+	static int getRequiredAttributes(RearrangerSettings settings) {
+		int result = 0;
+		for (AttributeGroup rule : settings.getItemOrderAttributeList()) {
+			if (rule instanceof MethodAttributes) {
+				MethodAttributes ma = (MethodAttributes) rule;
+				if (ma.isCanonicalMethodType() || ma.isOtherMethodType()) {
+					result |= CANONICAL;
+				}
+				if (ma.getOverriddenAttr().isValue() || ma.getImplementedAttr().isValue()) {
+					result |= OVERRIDDEN;
+				}
+				if (ma.getOverridingAttr().isValue() || ma.getImplementingAttr().isValue()) {
+					result |= OVERRIDING;
+				}
+			} else if (rule instanceof InterfaceAttributes) {
+				result |= INTERFACE;
+			}
+		}
+		return result;
+	}
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	MethodAttributeResolver(PsiSearchHelper psh, RearrangerSettings settings) {
+		this.psh = psh;
+		requiredAttributes = getRequiredAttributes(settings);
+	}
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+	int getRequiredAttributes() {
+		return requiredAttributes;
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * Determine the given attributes of a method.
+	 *
+	 * @param entry method entry; its interface name is set if requested and found.
+	 * @param attributes combination of CANONICAL, INTERFACE, OVERRIDDEN and OVERRIDING.
+	 *
+	 * @return modifier flags determined.
+	 */
+	int resolve(MethodEntry entry, int attributes) {
+		PsiMethod method = (PsiMethod) entry.getEnd();
+		int modifiers = 0;
+		if ((attributes & CANONICAL) != 0 && !method.isConstructor()) {
+			int canonical = SuperMethodCache.getInstance().getCanonical(method);
+			modifiers |= canonical != 0 ? canonical : ModifierConstants.OTHER_METHOD;
+		}
+		if ((attributes & INTERFACE) != 0) {
+			entry.setInterfaceName(SuperMethodCache.getInstance().getInterfaceName(method));
+		}
+		if ((attributes & OVERRIDDEN) != 0) {
+			Collection<PsiMethod> overridersList = findOverridingMethods(method);
+			if (!overridersList.isEmpty()) {
+				PsiMethod[] overriders = overridersList.toArray(new PsiMethod[overridersList.size()]);
+
+				logger.debug(
+						"method " +
+								method.toString() +
+								" is overridden; has " +
+								overriders.length + " overriding methods:"
+				);
+				dumpMethodNames(overriders);
+				if (method.getBody() == null) {
+					modifiers |= ModifierConstants.IMPLEMENTED;
+				} else {
+					modifiers |= ModifierConstants.OVERRIDDEN;
+				}
+			}
+		}
+		if ((attributes & OVERRIDING) != 0) {
+			// determine if this method overrides or implements another.
+			modifiers |= SuperMethodCache.getInstance().getOverriding(method);
+		}
+		logger.debug(
+				"method " +
+						method.getName() +
+						" resolved attributes: " +
+						ModifierConstants.toString(modifiers)
+		);
+		return modifiers;
+	}
+
+	/**
+	 * Finds the methods overriding (or implementing) the given method within its use scope.  Methods which cannot be
+	 * overridden are not searched for.  Otherwise the inheritors of the method's class are searched once, when first
+	 * needed, and reused for all its methods.
+	 *
+	 * @param method method of the class being parsed
+	 *
+	 * @return overriding methods, if any.
+	 */
+	private Collection<PsiMethod> findOverridingMethods(PsiMethod method) {
+		final PsiClass containingClass = method.getContainingClass();
+		if (containingClass == null || !PsiUtil.canBeOverridden(method)) {
+			return Collections.emptyList();
+		}
+		Collection<PsiClass> classInheritors = inheritors.get(containingClass);
+		if (classInheritors == null) {
+			SearchScope classScope = psh.getUseScope(containingClass);
+			classInheritors = ClassInheritorsSearch.search(containingClass, classScope, true).findAll();
+			inheritors.put(containingClass, classInheritors);
+			logger.debug("class " + containingClass.getName() + " has " + classInheritors.size() + " inheritors");
+		}
+		if (classInheritors.isEmpty()) {
+			return Collections.emptyList();
+		}
+		SearchScope methodScope = psh.getUseScope(method);
+		boolean packageLocal = method.hasModifierProperty(PsiModifier.PACKAGE_LOCAL);
+		JavaPsiFacade facade = JavaPsiFacade.getInstance(method.getProject());
+		Set<PsiMethod> result = new LinkedHashSet<PsiMethod>();
+		for (PsiClass inheritor : classInheritors) {
+			if (!PsiSearchScopeUtil.isInScope(methodScope, inheritor)) {
+				continue;
+			}
+			/**
+			 * search the inheritor's bases too, so that an implementation it inherits from a class which is not itself
+			 * an inheritor is found, e.g. B.m() for I.m() in "class C extends B implements I".
+			 */
+			PsiMethod overrider = MethodSignatureUtil.findMethodBySuperMethod(inheritor, method, true);
+			if (overrider == null ||
+					overrider == method ||
+					overrider.hasModifierProperty(PsiModifier.STATIC)) {
+				continue;
+			}
+			PsiClass overriderClass = overrider.getContainingClass();
+			if (overriderClass == null || containingClass.isInheritor(overriderClass, true)) {
+				continue;
+			}
+			// a package-private method can only be overridden within its package.
+			if (!packageLocal || facade.arePackagesTheSame(method, overrider)) {
+				result.add(overrider);
+			}
+		}
+		return result;
+	}
+
+	private void dumpMethodNames(PsiMethod[] methods) {
+		for (int j = 0; j < methods.length; j++) {
+			logger.debug(
+					j +
+							":" +
+							methods[j].toString() +
+							" of class " +
+							methods[j].getParent().toString()
+			);
+		}
+	}
+
+}
@@ -22,14 +22,16 @@
 package com.wrq.rearranger.entry;
 
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.editor.Document;
 import com.intellij.psi.JavaRecursiveElementVisitor;
-import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiJavaToken;
+import com.intellij.psi.PsiKeyword;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiMethodCallExpression;
 import com.intellij.psi.PsiModifier;
 import com.intellij.psi.PsiParameterList;
+import com.intellij.psi.PsiReferenceExpression;
 import com.wrq.rearranger.ModifierConstants;
 import com.wrq.rearranger.popup.RearrangerTreeNode;
 import com.wrq.rearranger.rearrangement.Emitter;
@@ -38,18 +40,23 @@ import com.wrq.rearranger.settings.CommentRule;
 import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
 import com.wrq.rearranger.settings.RelatedMethodsSettings;
+import com.wrq.rearranger.settings.attributeGroups.GetterSetterDefinition;
 import com.wrq.rearranger.settings.attributeGroups.IHasGetterSetterDefinition;
 import com.wrq.rearranger.settings.attributeGroups.IRestrictMethodExtraction;
 import com.wrq.rearranger.settings.attributeGroups.IRule;
-import com.wrq.rearranger.util.CommentUtil;
+import com.wrq.rearranger.util.CallCycles;
 import com.wrq.rearranger.util.MethodUtil;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
 
 import javax.swing.JLabel;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -64,13 +71,26 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	private static final Logger logger = Logger.getInstance(MethodEntry.class);
 
 	/**
-	 * Contains a list of methods called by this method.  One exception: if this method is a getter, then the
-	 * corresponding setter will be placed in calledMethods.  This allows the same code to rearrange both types of
-	 * related methods.
+	 * placeholders of related method comments, in the order their values are passed to the comment template.
 	 */
-	List<MethodEntry> calledMethods = new ArrayList<>();
+	private static final String[] RELATED_METHOD_PLACEHOLDERS = {"%TL%", "%MN%", "%AM%", "%LV%"};
 
-	List<MethodEntry> calledByMethods = new ArrayList<>();
+	/**
+	 * Contains the methods called by this method, in order of first invocation.  Entries do not override equals or
+	 * hashCode, so membership tests and removals are by identity and take constant time.
+	 */
+	Set<MethodEntry> calledMethods = new LinkedHashSet<>();
+
+	/**
+	 * Contains the methods calling this method, in the order the callers appear in the class.
+	 */
+	Set<MethodEntry> calledByMethods = new LinkedHashSet<>();
+
+	/**
+	 * number of calls to this method from the methods in calledByMethods; a caller which calls this method more than
+	 * once is counted for each call.
+	 */
+	private int callCount;
 
 	List<MethodEntry> overloadedMethods = new ArrayList<>();
 
@@ -98,9 +118,32 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	/**
 	 * name of interface, if this method implements an interface method.
 	 */
-	private final String interfaceName;
+	private String interfaceName;
+
+	/**
+	 * determines the attributes requiring a search of the class hierarchy, when first accessed.
+	 */
+	private final MethodAttributeResolver attributeResolver;
+
+	/**
+	 * attributes (MethodAttributeResolver constants) already determined by the resolver.
+	 */
+	private int resolvedAttributes;
+
+	/**
+	 * modifier flags determined by the resolver.
+	 */
+	private int resolvedModifiers;
+
+	private List<MethodEntry> sortedMethods = new ArrayList<MethodEntry>();
+
+	/**
+	 * whether the method is a getter, resp. setter, according to each getter/setter definition it has been tested
+	 * against, so that the method body is inspected at most once per definition.  Created when first needed.
+	 */
+	private Map<GetterSetterDefinition, Boolean> getterByDefinition;
 
-	private List<MethodEntry> sortedMethods = new LinkedList<MethodEntry>();
+	private Map<GetterSetterDefinition, Boolean> setterByDefinition;
 
 // -------------------------- STATIC METHODS --------------------------
 
@@ -115,6 +158,18 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	public static void rearrangeRelatedItems(
 			List<ClassContentsEntry> entries, IRuleInstance ruleInstance, RelatedMethodsSettings rms) {
 		List<RangeEntry> parentEntries = new ArrayList<>(ruleInstance.getMatches());
+		/**
+		 * index the method entries by position; a set bit in unplaced marks an entry not yet placed under a parent.
+		 * Placed entries are removed from the entries list in a single pass when done.
+		 */
+		Map<MethodEntry, Integer> positions = new IdentityHashMap<MethodEntry, Integer>(entries.size());
+		for (int i = 0; i < entries.size(); i++) {
+			if (entries.get(i) instanceof MethodEntry) {
+				positions.put((MethodEntry) entries.get(i), i);
+			}
+		}
+		BitSet unplaced = new BitSet(entries.size());
+		unplaced.set(0, entries.size());
 
 		for (RangeEntry o : parentEntries) {
 			if (o instanceof IRelatableEntry) {
@@ -150,16 +205,9 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 					}
 				}
 				if (me.calledMethods.size() > 0) {
-					List<MethodEntry> parents = new LinkedList<MethodEntry>();
+					List<MethodEntry> parents = new ArrayList<MethodEntry>(1);
 					parents.add(me);
-					moveRelatedItems(
-							entries,
-							parents,
-							rms,
-							((PsiMethod) me.end).getName(),
-							((PsiMethod) me.end).getName() + "()",
-							1
-					);
+					moveRelatedItems(positions, unplaced, parents, rms);
 					if (logger.isDebugEnabled()) {
 						// dump sorted children recursively
 						me.dumpChild(0);
@@ -168,89 +216,72 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 				}
 			}
 		}
+		if (unplaced.cardinality() < entries.size()) {
+			List<ClassContentsEntry> remaining = new ArrayList<ClassContentsEntry>(unplaced.cardinality());
+			for (int i = unplaced.nextSetBit(0); i >= 0; i = unplaced.nextSetBit(i + 1)) {
+				remaining.add(entries.get(i));
+			}
+			entries.clear();
+			entries.addAll(remaining);
+		}
 	}
 
 	/**
 	 * Move methods related to this one underneath it (beginning at the index specified.)  Do so in depth-first or
 	 * breadth-first order, as configured.  At each level, do alphabetical, original order, or call order sorting.
 	 *
-	 * @param entries list of global (all rule) unmatched items including dependent methods
+	 * @param positions index of each method entry in the global (all rule) list of unmatched items
+	 * @param unplaced bits set for those unmatched items which have not yet been moved under a parent
 	 * @param parents contains a list of items to be handled; order is depth or breadth-first.
 	 */
 	private static void moveRelatedItems(
-			List<ClassContentsEntry> entries,
+			final Map<MethodEntry, Integer> positions,
+			BitSet unplaced,
 			List<MethodEntry> parents,
-			RelatedMethodsSettings rms,
-			String topLevelMethodName,
-			String allMethodNames,
-			int level) {
-		allMethodNames = buildAllMethodNamesString(allMethodNames, parents);
+			RelatedMethodsSettings rms) {
 		/**
-		 * First, identify all dependent methods.  Move them to parents in the specified order.
+		 * First, identify all dependent methods by walking the callee list of each parent, claiming those callees which
+		 * are still unplaced.  Move them to parents in the specified order.
 		 */
 		List<MethodEntry> children = parents.get(parents.size() - 1).sortedMethods;
-//        if (rms.isDepthFirstOrdering())
-//        {
+		List<MethodEntry> callees = new ArrayList<MethodEntry>();
+		for (MethodEntry parent : parents) {
+			for (MethodEntry callee : parent.calledMethods) {
+				Integer position = positions.get(callee);
+				if (position != null && unplaced.get(position)) {
+					unplaced.clear(position);
+					callees.add(callee);
+				}
+			}
+		}
 		switch (rms.getOrdering()) {
-			case RelatedMethodsSettings.RETAIN_ORIGINAL_ORDER: {
+			case RelatedMethodsSettings.RETAIN_ORIGINAL_ORDER:
 				/**
-				 * iterate through entries looking for those that are called by method(s) in the set of parent methods.
-				 * Add these to the list of children in order seen in entries.
+				 * Add the callees to the list of children in order seen in entries.
 				 */
-				ListIterator li = entries.listIterator();
-				while (li.hasNext()) {
-					Object o = li.next();
-					if (o instanceof IRelatableEntry) {
-						MethodEntry me = (MethodEntry) o;
-						for (MethodEntry entry : parents) {
-							if (me.calledByMethods.contains(entry)) {
-								children.add(me);
-								li.remove();
-								break;
-							}
-						}
-					}
-				}
-			}
-			break;
+				callees.sort(Comparator.comparingInt(positions::get));
+				children.addAll(callees);
+				break;
 			case RelatedMethodsSettings.ALPHABETICAL_ORDER:
 				/**
-				 * iterate through entries looking for those that are called by method(s) in the set of parent methods.
-				 * Add these to the list of children alphabetically.
+				 * Add the callees to the list of children alphabetically; insert them in order seen in entries so that
+				 * ties are resolved as before.
 				 */
-				ListIterator li = entries.listIterator();
-				while (li.hasNext()) {
-					Object o = li.next();
-					if (o instanceof IRelatableEntry) {
-						MethodEntry me = (MethodEntry) o;
-						for (MethodEntry entry : parents) {
-							if (me.calledByMethods.contains(entry)) {
-								me.insertAlphabetically(children);
-								li.remove();
-								break;
-							}
-						}
-					}
+				callees.sort(Comparator.comparingInt(positions::get));
+				for (MethodEntry callee : callees) {
+					callee.insertAlphabetically(children);
 				}
 				break;
 			case RelatedMethodsSettings.INVOCATION_ORDER:
 				/**
-				 * iterate through calling methods, looking for remaining unmatched methods (in 'entries' list).
-				 * Add these to the list of children in order of invocation.
+				 * callees were collected in order of invocation.
 				 */
-				for (MethodEntry me : parents) {
-					for (MethodEntry child : me.calledMethods) {
-						if (entries.contains(child)) {
-							children.add(child);
-							entries.remove(child);
-						}
-					}
-				}
+				children.addAll(callees);
 				break;
 		}
 		/**
 		 * now children contains all the children of the parents for this level, and all these children have been
-		 * removed from "entries".  Move these to the rearranged list.  Then:
+		 * marked as placed.  Then:
 		 * If depth-first, recurse setting the parent list to each of the children in turn.
 		 * If breadth first, recurse setting the parent list to all of the children.
 		 */
@@ -260,51 +291,14 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 					if (entry.calledMethods.size() == 0) {
 						continue;
 					}
-					List<MethodEntry> parent = new LinkedList<MethodEntry>();
+					List<MethodEntry> parent = new ArrayList<MethodEntry>(1);
 					parent.add(entry);
-					moveRelatedItems(
-							entries,
-							parent,
-							rms,
-							topLevelMethodName,
-							allMethodNames + "." + ((PsiMethod) entry.end).getName() + "()",
-							level + 1
-					);
+					moveRelatedItems(positions, unplaced, parent, rms);
 				}
 			} else {
-				moveRelatedItems(
-						entries,
-						children,
-						rms,
-						topLevelMethodName,
-						allMethodNames + ".Depth " + level,
-						level + 1
-				);
-			}
-		}
-	}
-
-	private static String buildAllMethodNamesString(String allMethodNames, List<MethodEntry> parents) {
-		StringBuffer allMN = new StringBuffer(120);
-		allMN.append(allMethodNames);
-		if (allMN.length() > 0) {
-			allMN.append(".");
-		}
-		if (parents.size() > 1) {
-			allMN.append("[");
-		}
-		boolean first = true;
-		for (MethodEntry entry : parents) {
-			if (!first) {
-				allMN.append(",");
+				moveRelatedItems(positions, unplaced, children, rms);
 			}
-			first = false;
-			allMN.append(((PsiMethod) entry.end).getName());
 		}
-		if (parents.size() > 1) {
-			allMN.append("]");
-		}
-		return allMN.toString();
 	}
 
 	public void insertAlphabetically(final List<MethodEntry> list) {
@@ -351,41 +345,37 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	private void assignComments(RelatedMethodsSettings rms) {
 		List<MethodEntry> callingMethod = new ArrayList<MethodEntry>();
 		callingMethod.add(this);
-		assignComments(rms, callingMethod, "", 1);
+		assignComments(rms, callingMethod, "", 1, isAllMethodNamesUsed(rms));
 	}
 
 	/**
 	 * Eliminate cycles of method calls so that the related method tree is a tree, not a cycle (or directed graph). If
 	 * method A calls method B, B calls C, and C calls A, eliminate the final call to prevent cycling.
+	 * <p/>
+	 * Cycles are confined to the strongly connected components of the call graph, which are found in a single pass by
+	 * {@link CallCycles}.  Each component containing a cycle is then walked depth-first from its member reached first,
+	 * and calls back to an already visited member are removed.
 	 *
 	 * @param contents
 	 */
 	public static void eliminateCycles(List<ClassContentsEntry> contents) {
+		List<MethodEntry> methods = new ArrayList<MethodEntry>(contents.size());
 		for (ClassContentsEntry entry : contents) {
 			if (entry instanceof IRelatableEntry) {
-				MethodEntry current = (MethodEntry) entry;
-				List<MethodEntry> set = new LinkedList<MethodEntry>();
-				set.add(current);
-				test(current, set);
+				methods.add((MethodEntry) entry);
 			}
 		}
-	}
-
-	private static void test(MethodEntry current, List<MethodEntry> set) {
-		Iterator<MethodEntry> it = current.calledMethods.iterator();
-		while (it.hasNext()) {
-			MethodEntry callee = it.next();
-			if (set.contains(callee)) {
-				callee.calledByMethods.remove(current);
-				if (callee.calledByMethods.size() == 0) {
-					callee.relatedMethod = false;
+		CallCycles.eliminateCycles(
+				methods,
+				method -> method.calledMethods,
+				(caller, callee) -> {
+					caller.calledMethods.remove(callee);
+					callee.calledByMethods.remove(caller);
+					if (callee.calledByMethods.size() == 0) {
+						callee.relatedMethod = false;
+					}
 				}
-				it.remove();
-			} else {
-				set.add(callee);
-				test(callee, set);
-			}
-		}
+		);
 	}
 
 	/**
@@ -396,116 +386,87 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		if (!settings.isKeepOverloadedMethodsTogether()) {
 			return;
 		}
+		logger.debug("entered handleOverloadedMethods(): move overloaded methods together");
 		/**
-		 * first, detect overloaded methods and move them to the first method's list of overloaded methods.
-		 * Make two passes, first for extracted methods, then for non-extracted methods.  This will organize any
-		 * overloaded methods for extracted methods with them (as opposed to whichever was seen first.)
+		 * group methods by name in a single pass.  The head of each group is the first extracted method, if any,
+		 * so that overloaded methods of an extracted method are organized with it; otherwise it is the first method
+		 * encountered.  The remaining methods follow in original order.
 		 */
-		cullOverloadedMethods(contents, true);
-		logger.debug("entered handleOverloadedMethods(): move overloaded methods together");
-		cullOverloadedMethods(contents, false);
-		List<ClassContentsEntry> copy = new ArrayList<ClassContentsEntry>(contents);
-		for (ClassContentsEntry rangeEntry : copy) {
-			if (rangeEntry instanceof IRelatableEntry) {
-				MethodEntry current = (MethodEntry) rangeEntry;
-				if (current.overloadedMethods.size() > 0) {
-					List<MethodEntry> newList = new ArrayList<MethodEntry>(current.overloadedMethods.size() + 1);
-					newList.add(current);
-					/**
-					 * we are looking at the head of a list of overloaded methods.  We need to sort the list
-					 * if necessary and, if the head of the list has changed, replace it in the contents array.
-					 */
-					switch (settings.getOverloadedOrder()) {
-						case RearrangerSettingsImplementation.OVERLOADED_ORDER_RETAIN_ORIGINAL:
-							// list is already in original order, except perhaps that the top-most extracted method
-							// comes first (if there is one).
-							newList.addAll(current.overloadedMethods);
-							break;
-						case RearrangerSettingsImplementation.OVERLOADED_ORDER_ASCENDING_PARAMETERS:
-						case RearrangerSettingsImplementation.OVERLOADED_ORDER_DESCENDING_PARAMETERS:
-							for (MethodEntry entry : current.overloadedMethods) {
-								boolean inserted = false;
-								for (int index = 0; index < newList.size(); index++) {
-									MethodEntry me = newList.get(index);
-									if (settings.getOverloadedOrder() ==
-											RearrangerSettingsImplementation.OVERLOADED_ORDER_ASCENDING_PARAMETERS
-											? me.getnParameters() > entry.getnParameters()
-											: me.getnParameters() < entry.getnParameters()) {
-										newList.add(index, entry);
-										inserted = true;
-										break;
-									}
-								}
-								if (!inserted) {
-									newList.add(entry);
-								}
-							}
-							break;
-					}
-					current.overloadedMethods.clear();
-					/**
-					 * if the head of the arraylist is not the same as "current", then the sort operation moved
-					 * another method to the head of the list.  Replace that in the contents array.  Then assign
-					 * a new ordered list.
-					 */
-					int index = contents.indexOf(current);
-					if (newList.get(0) != current) {
-						contents.set(index, newList.get(0));
-					}
-					/**
-					 * insert the remaining overloaded methods after the current entry.
-					 */
-					newList.remove(0);
-					for (int j = 0; j < newList.size(); j++) {
-						contents.add(index + j + 1, newList.get(j));
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * Removes overloaded methods from the contents list and adds them to the overloadedMethods list of the first
-	 * overloaded method encountered.
-	 *
-	 * @param contents
-	 * @param doExtractedMethods
-	 */
-	private static void cullOverloadedMethods(
-			List<ClassContentsEntry> contents,
-			boolean doExtractedMethods) {
-		List<ClassContentsEntry> copy = new ArrayList<ClassContentsEntry>(contents);
-		for (ClassContentsEntry o : copy) {
+		Map<String, List<MethodEntry>> groups = new HashMap<String, List<MethodEntry>>();
+		for (ClassContentsEntry o : contents) {
 			if (o instanceof IRelatableEntry) {
 				MethodEntry me = (MethodEntry) o;
-				if (me.isRelatedMethod() == doExtractedMethods && !me.isOverloadedMethod) {
-					String meName = me.end.toString();
-					// search contents list for methods with identical name, and attach them as overloaded methods.
-					ListIterator<ClassContentsEntry> contentIterator = contents.listIterator();
-					while (contentIterator.hasNext()) {
-						Object o1 = contentIterator.next();
-						if (o1 instanceof IRelatableEntry) {
-							MethodEntry me2 = (MethodEntry) o1;
-							if (me2 == me) {
-								continue;
-							}
-							String me2Name = me2.end.toString();
-							if (meName.equals(me2Name)) {
-								contentIterator.remove();
-								me.overloadedMethods.add(me2);
-								me2.isOverloadedMethod = true; // set flag so array copy will skip this entry.
-							}
-						}
-					}
+				List<MethodEntry> group = groups.computeIfAbsent(
+						((PsiMethod) me.end).getName(),
+						name -> new ArrayList<MethodEntry>(1)
+				);
+				if (me.isRelatedMethod() && (group.isEmpty() || !group.get(0).isRelatedMethod())) {
+					group.add(0, me);
+				} else {
+					group.add(me);
 				}
 			}
 		}
+		Map<MethodEntry, List<MethodEntry>> groupsByHead = new IdentityHashMap<MethodEntry, List<MethodEntry>>();
+		for (List<MethodEntry> group : groups.values()) {
+			if (group.size() < 2) {
+				continue;
+			}
+			MethodEntry head = group.get(0);
+			for (int i = 1; i < group.size(); i++) {
+				group.get(i).isOverloadedMethod = true;
+			}
+			switch (settings.getOverloadedOrder()) {
+				case RearrangerSettingsImplementation.OVERLOADED_ORDER_RETAIN_ORIGINAL:
+					// list is already in original order, except perhaps that the top-most extracted method
+					// comes first (if there is one).
+					break;
+				case RearrangerSettingsImplementation.OVERLOADED_ORDER_ASCENDING_PARAMETERS:
+					// stable sort; methods with the same number of parameters keep their order.
+					group.sort(Comparator.comparingInt(MethodEntry::getnParameters));
+					break;
+				case RearrangerSettingsImplementation.OVERLOADED_ORDER_DESCENDING_PARAMETERS:
+					group.sort(Comparator.comparingInt(MethodEntry::getnParameters).reversed());
+					break;
+			}
+			groupsByHead.put(head, group);
+		}
+		if (groupsByHead.isEmpty()) {
+			return;
+		}
+		/**
+		 * rebuild the contents once: each group replaces its head, and the other overloaded methods are dropped
+		 * from their original positions.
+		 */
+		List<ClassContentsEntry> rearranged = new ArrayList<ClassContentsEntry>(contents.size());
+		for (ClassContentsEntry o : contents) {
+			List<MethodEntry> group = groupsByHead.get(o);
+			if (group != null) {
+				rearranged.addAll(group);
+			} else if (!(o instanceof MethodEntry) || !((MethodEntry) o).isOverloadedMethod) {
+				rearranged.add(o);
+			}
+		}
+		contents.clear();
+		contents.addAll(rearranged);
 	}
 
 	public int getnParameters() {
 		return nParameters;
 	}
 
+	private MethodEntry getFirstCaller() {
+		return calledByMethods.iterator().next();
+	}
+
+	private void resolveAttributes(int attributes) {
+		int pending = attributes & ~resolvedAttributes;
+		if (pending != 0) {
+			resolvedAttributes |= pending;
+			resolvedModifiers |= attributeResolver.resolve(this, pending);
+		}
+	}
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
 	public MethodEntry(
@@ -516,10 +477,10 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 			final String name,
 			final String type,
 			int nParameters,
-			final String interfaceName) {
+			final MethodAttributeResolver attributeResolver) {
 		super(start, end, modifiers, modifierString, name, type);
 		this.nParameters = nParameters;
-		this.interfaceName = interfaceName;
+		this.attributeResolver = attributeResolver;
 	}
 
 // --------------------- GETTER / SETTER METHODS ---------------------
@@ -538,10 +499,34 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		return customizedTrailingComment;
 	}
 
+	@Override
+	public int getEntryKind() {
+		int kind = super.getEntryKind();
+		if (kind == EntryKind.METHOD && getInterfaceName() != null) {
+			kind = EntryKind.INTERFACE_METHOD;
+		}
+		return kind;
+	}
+
 	public String getInterfaceName() {
+		resolveAttributes(attributeResolver.getRequiredAttributes() & MethodAttributeResolver.INTERFACE);
 		return interfaceName;
 	}
 
+	void setInterfaceName(String interfaceName) {
+		this.interfaceName = interfaceName;
+	}
+
+	/**
+	 * @return modifiers of the method, including those flags required by the configured rules which depend on the
+	 * class hierarchy.
+	 */
+	@Override
+	public int getModifiers() {
+		resolveAttributes(attributeResolver.getRequiredAttributes());
+		return super.getModifiers() | resolvedModifiers;
+	}
+
 	public boolean isGetter() {
 		return getter;
 	}
@@ -570,6 +555,32 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		return setter;
 	}
 
+	/**
+	 * @param gsd getter/setter definition
+	 *
+	 * @return true if the method is a getter according to the definition.  The result is remembered for the
+	 * definition (by identity).
+	 */
+	public boolean isGetterFor(GetterSetterDefinition gsd) {
+		if (getterByDefinition == null) {
+			getterByDefinition = new IdentityHashMap<GetterSetterDefinition, Boolean>(4);
+		}
+		return getterByDefinition.computeIfAbsent(gsd, definition -> MethodUtil.isGetter((PsiMethod) end, definition));
+	}
+
+	/**
+	 * @param gsd getter/setter definition
+	 *
+	 * @return true if the method is a setter according to the definition.  The result is remembered for the
+	 * definition (by identity).
+	 */
+	public boolean isSetterFor(GetterSetterDefinition gsd) {
+		if (setterByDefinition == null) {
+			setterByDefinition = new IdentityHashMap<GetterSetterDefinition, Boolean>(4);
+		}
+		return setterByDefinition.computeIfAbsent(gsd, definition -> MethodUtil.isSetter((PsiMethod) end, definition));
+	}
+
 	public void setSetter(boolean setter) {
 		this.setter = setter;
 	}
@@ -605,6 +616,8 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 			} else {
 				result.add("nodes/c_plocal");
 			}
+			// the popup shows these flags even if no rule refers to them.
+			resolveAttributes(MethodAttributeResolver.OVERRIDDEN | MethodAttributeResolver.OVERRIDING);
 			if ((getModifiers() & ModifierConstants.IMPLEMENTING) != 0) {
 				result.add("gutter/implementingMethod");
 			}
@@ -720,7 +733,7 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 						case RelatedMethodsSettings.NON_PRIVATE_EXTRACTED_NEVER:
 							break;
 						case RelatedMethodsSettings.NON_PRIVATE_EXTRACTED_ONE_CALLER:
-							if (calledByMethods.size() == 1) {
+							if (callCount == 1) {
 								relatedMethod = true;
 							}
 							break;
@@ -745,41 +758,37 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		 * If this is not an extracted method, remove it from any callers so that it won't be moved.
 		 */
 		if (!relatedMethod) {
-			ListIterator<MethodEntry> li = calledByMethods.listIterator();
-			while (li.hasNext()) {
-				MethodEntry entry = li.next();
+			for (MethodEntry entry : calledByMethods) {
 				entry.calledMethods.remove(this);
-				li.remove();
 			}
+			calledByMethods.clear();
 		}
 		/**
 		 * Remaining entries are only extracted methods at this point.  Using first/last rule, keep only the call by
 		 * the calling method that this child method will be grouped with, and discard the rest.
 		 */
 		if (calledByMethods.size() > 1) {
-			ListIterator<MethodEntry> li;
-			if (settings.isBelowFirstCaller()) {
-				li = calledByMethods.listIterator(1);
-				while (li.hasNext()) {
-					MethodEntry entry = li.next();
-					entry.calledMethods.remove(this);
-					li.remove();
+			MethodEntry keptCaller = null;
+			for (MethodEntry entry : calledByMethods) {
+				keptCaller = entry;
+				if (settings.isBelowFirstCaller()) {
+					break;
 				}
-			} else {
-				li = calledByMethods.listIterator(calledByMethods.size() - 1);
-				while (li.hasPrevious()) {
-					MethodEntry entry = li.previous();
+			}
+			for (MethodEntry entry : calledByMethods) {
+				if (entry != keptCaller) {
 					entry.calledMethods.remove(this);
-					li.remove();
 				}
 			}
+			calledByMethods.clear();
+			calledByMethods.add(keptCaller);
 		}
 		if (relatedMethod) {
 			logger.debug(
 					"extracted method " +
 							toString() +
 							" will be arranged under " +
-							calledByMethods.get(0).toString()
+							getFirstCaller().toString()
 			);
 		}
 	}
@@ -800,8 +809,8 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		 * If the method matches an individual rule with its own getter/setter definition, the values of
 		 * getter and setter will be changed to match that rule's definition.
 		 */
-		setGetter(MethodUtil.isGetter((PsiMethod) end, settings.getDefaultGSDefinition()));
-		setSetter(MethodUtil.isSetter((PsiMethod) end, settings.getDefaultGSDefinition()));
+		setGetter(isGetterFor(settings.getDefaultGSDefinition()));
+		setSetter(isSetterFor(settings.getDefaultGSDefinition()));
 		for (IRule rule : settings.getItemOrderAttributeList()) {
 			if (rule instanceof IRestrictMethodExtraction) {
 				if (rule.isMatch(this)) {
@@ -815,20 +824,12 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 					}
 					setGetter(false);
 					if (rule instanceof IHasGetterSetterDefinition) {
-						if (MethodUtil.isGetter(
-								(PsiMethod) getEnd(),
-								((IHasGetterSetterDefinition) rule).getGetterSetterDefinition()
-						)) {
+						if (isGetterFor(((IHasGetterSetterDefinition) rule).getGetterSetterDefinition())) {
 							if (settings.isKeepGettersSettersTogether()) {
 								setGetter(true);
 							}
 						}
-						setSetter(
-								MethodUtil.isSetter(
-										(PsiMethod) getEnd(),
-										((IHasGetterSetterDefinition) rule).getGetterSetterDefinition()
-								)
-						);
+						setSetter(isSetterFor(((IHasGetterSetterDefinition) rule).getGetterSetterDefinition()));
 					}
 					break;
 				}
@@ -837,15 +838,15 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	}
 
 	@Override
-	public void determineSettersAndMethodCalls(RearrangerSettings settings, List<ClassContentsEntry> contents) {
+	public void determineSettersAndMethodCalls(RearrangerSettings settings, ClassMemberIndex index) {
 		if (isGetter()) {
 			if (settings.isKeepGettersSettersTogether()) {
-				determineSetter(contents, settings); // link getters/setters via correspondingGetterSetter entries
+				determineSetter(index, settings); // link getters/setters via correspondingGetterSetter entries
 			}
 		}
 		if (!isNoExtractedMethods() &&
 				settings.getExtractedMethodsSettings().isMoveExtractedMethods()) {
-			determineMethodCalls(contents, settings);
+			determineMethodCalls(index, settings);
 		}
 	}
 
@@ -865,21 +866,26 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	 * @param rms
 	 * @param allMethodNames contains a list of methods invoked to reach this point.  Top level is empty string.
 	 * @param level current nesting level; top level is 1.
+	 * @param trackMethodNames true if allMethodNames must be maintained because a comment uses %AM%.
 	 */
 	private void assignComments(
 			RelatedMethodsSettings rms,
 			List<MethodEntry> allCallingMethods,
 			String allMethodNames,
-			int level) {
+			int level,
+			boolean trackMethodNames) {
 		final String currentMethodName = ((PsiMethod) end).getName();
-		String[] callingNames = new String[allCallingMethods.size()];
-		for (int i = 0; i < allCallingMethods.size(); i++) {
-			MethodEntry me = allCallingMethods.get(i);
-			callingNames[i] = ((PsiMethod) me.end).getName();
+		String[] callingNames = null;
+		if (trackMethodNames) {
+			callingNames = new String[allCallingMethods.size()];
+			for (int i = 0; i < allCallingMethods.size(); i++) {
+				MethodEntry me = allCallingMethods.get(i);
+				callingNames[i] = ((PsiMethod) me.end).getName();
+			}
 		}
 		MethodEntry topLevel = this;
 		while (topLevel.calledByMethods.size() > 0) {
-			topLevel = topLevel.calledByMethods.get(0);
+			topLevel = topLevel.getFirstCaller();
 		}
 		switch (rms.getCommentType()) {
 			case RelatedMethodsSettings.COMMENT_TYPE_TOP_LEVEL:
@@ -918,15 +924,22 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 						level
 				);
 				// recursively assign comments.
-				for (MethodEntry methodEntry : sortedMethods) {
-					String newAllMethodNames = appendMN(
+				if (sortedMethods.size() > 0) {
+					String newAllMethodNames = !trackMethodNames ? allMethodNames : appendMN(
 							allMethodNames,
 							callingNames,
-							allCallingMethods,
-							this,
+							allCallingMethods.indexOf(this),
 							rms
 					);
-					methodEntry.assignComments(rms, sortedMethods, newAllMethodNames, level + 1);
+					for (MethodEntry methodEntry : sortedMethods) {
+						methodEntry.assignComments(
+								rms,
+								sortedMethods,
+								newAllMethodNames,
+								level + 1,
+								trackMethodNames
+						);
+					}
 				}
 				break;
 			case RelatedMethodsSettings.COMMENT_TYPE_NEW_FAMILY:
@@ -938,7 +951,8 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 				 */
 				MethodEntry firstEntry = null;
 				MethodEntry previousEntry = null;
-				for (MethodEntry methodEntry : allCallingMethods) {
+				for (int i = 0; i < allCallingMethods.size(); i++) {
+					MethodEntry methodEntry = allCallingMethods.get(i);
 					if (firstEntry == null) {
 						firstEntry = methodEntry;
 					} else if (methodEntry.sortedMethods.size() != 0 ||
@@ -954,14 +968,19 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 					}
 					previousEntry = methodEntry;
 					if (methodEntry.sortedMethods.size() != 0) {
-						String newAllMethodNames = appendMN(
+						String newAllMethodNames = !trackMethodNames ? allMethodNames : appendMN(
 								allMethodNames,
 								callingNames,
-								allCallingMethods,
-								methodEntry,
+								i,
 								rms
 						);
-						methodEntry.assignComments(rms, methodEntry.sortedMethods, newAllMethodNames, level + 1);
+						methodEntry.assignComments(
+								rms,
+								methodEntry.sortedMethods,
+								newAllMethodNames,
+								level + 1,
+								trackMethodNames
+						);
 					}
 				}
 				break;
@@ -976,16 +995,22 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 						level
 				);
 				// recursively assign comments for each level.
-				for (MethodEntry methodEntry : allCallingMethods) {
+				for (int i = 0; i < allCallingMethods.size(); i++) {
+					MethodEntry methodEntry = allCallingMethods.get(i);
 					if (methodEntry.sortedMethods.size() > 0) {
-						String newAllMethodNames = appendMN(
+						String newAllMethodNames = !trackMethodNames ? allMethodNames : appendMN(
 								allMethodNames,
 								callingNames,
-								allCallingMethods,
-								methodEntry,
+								i,
 								rms
 						);
-						methodEntry.assignComments(rms, methodEntry.sortedMethods, newAllMethodNames, level + 1);
+						methodEntry.assignComments(
+								rms,
+								methodEntry.sortedMethods,
+								newAllMethodNames,
+								level + 1,
+								trackMethodNames
+						);
 					}
 				}
 				while (endLevel.sortedMethods.size() > 0) {
@@ -1009,9 +1034,8 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	 * Build a string representing a sequence of method calls needed to reach a particular child method.
 	 *
 	 * @param allMethods previous method call sequence
-	 * @param newMethods names of each of the methods in callingMethods
-	 * @param callingMethods MethodEntry objects for each method
-	 * @param currentMethod current method being handled
+	 * @param newMethods names of each of the calling methods
+	 * @param currentIndex index of the current method (the one being handled) among the calling methods
 	 * @param rms contains setting determining if depth-first or breadth-first traversal has taken place.
 	 *
 	 * @return
@@ -1019,8 +1043,7 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	private String appendMN(
 			String allMethods,
 			String[] newMethods,
-			List callingMethods,
-			MethodEntry currentMethod,
+			int currentIndex,
 			RelatedMethodsSettings rms) {
 		StringBuffer result = new StringBuffer(allMethods.length() + 80);
 		result.append(allMethods);
@@ -1030,8 +1053,7 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 					result.append('.');
 				}
 			}
-			int index = callingMethods.indexOf(currentMethod);
-			result.append(newMethods[index]);
+			result.append(newMethods[currentIndex]);
 			result.append("()");
 		} else {
 			if (newMethods.length > 0) {
@@ -1056,6 +1078,18 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		return result.toString();
 	}
 
+	/**
+	 * @return true if either related method comment refers to the %AM% (all method names) placeholder; otherwise the
+	 *         sequence of calling method names need not be built.
+	 */
+	private static boolean isAllMethodNamesUsed(RelatedMethodsSettings rms) {
+		return usesPlaceholder(rms.getPrecedingComment(), "%AM%") || usesPlaceholder(rms.getTrailingComment(), "%AM%");
+	}
+
+	private static boolean usesPlaceholder(CommentRule comment, String placeholder) {
+		return comment != null && comment.getCommentText() != null && comment.getCommentText().contains(placeholder);
+	}
+
 	private static String expandComment(
 			CommentRule comment,
 			String methodName,
@@ -1065,37 +1099,15 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		if (comment == null) {
 			return "";
 		}
-		String result = comment.getCommentText();
-		if (result == null) {
+		if (comment.getCommentText() == null) {
 			return "";
 		}
-		result = result.replaceAll("%TL%", topLevelMethodName);
-		result = result.replaceAll("%MN%", methodName);
-		result = result.replaceAll("%AM%", methodNames);
-		result = result.replaceAll("%LV%", String.valueOf(level));
-		return result;
-	}
-
-	@Override
-	public void checkForComment() {
-		if (CommentUtil.getCommentMatchers().isEmpty()) {
-			return;
-		}
-		createAlternateValueString();
-		/**
-		 * we don't want to check for comments in the body of the method.  So reduce the alternate value string
-		 * to only that text up to and including the open brace.  Temporarily remove the rest of the text; append
-		 * it again after checking for comments.
-		 */
-		int brace = alternateValue.indexOf('{');
-		String temp = "";
-		if (brace >= 0) {
-			// every method should have an open brace -- unless it is abstract.
-			temp = alternateValue.substring(brace + 1);
-			alternateValue = alternateValue.substring(0, brace + 1);
-		}
-		super.checkForComment();
-		alternateValue += temp;
+		return comment.getTemplate(RELATED_METHOD_PLACEHOLDERS).render(
+				topLevelMethodName,
+				methodName,
+				methodNames,
+				String.valueOf(level)
+		);
 	}
 
 	/**
@@ -1103,10 +1115,10 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	 * in the calledMethods and calledByMethods lists, respectively.  Only method calls to methods in this class are
 	 * entered into the call graph, because only methods in this class can be moved underneath their caller.
 	 *
-	 * @param possibleMethods list of methods in this class; call graph is limited to these methods
+	 * @param possibleMethods index of methods in this class; call graph is limited to these methods
 	 * @param settings current configuration
 	 */
-	public void determineMethodCalls(List<ClassContentsEntry> possibleMethods, RearrangerSettings settings) {
+	public void determineMethodCalls(ClassMemberIndex possibleMethods, RearrangerSettings settings) {
 		/**
 		 * recursively walk the method's code block looking for method calls.
 		 */
@@ -1117,26 +1129,30 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 			@Override
 			public void visitMethodCallExpression(PsiMethodCallExpression psiMethodCallExpression) {
 //                logger.debug("visitMethodCallExpression:" + psiMethodCallExpression.toString());
-				PsiElement c = psiMethodCallExpression.getMethodExpression().getReference().resolve();
+				PsiReferenceExpression methodExpression = psiMethodCallExpression.getMethodExpression();
 				/**
-				 * if the called method is already in our list, don't add it again.
+				 * a call whose name matches no method of this class cannot be to one of them; don't resolve it.
+				 * A "this(...)" constructor call is named by the keyword and must always be resolved.
 				 */
-				if (c != null && !calledMethods.contains(c)) {
-					for (ClassContentsEntry o : possibleMethods) {
-						if (o instanceof IRelatableEntry) {
-							MethodEntry me = (MethodEntry) o;
-							PsiMethod m = (PsiMethod) me.end;
-							if (c == m) {
-								if (settings.isKeepOverloadedMethodsTogether() &&
-										m.getName().equals(thisMethod.getName())) {
-									logger.debug("method " + me + " is overload, not inserted in call graph");
-								} else {
-									logger.debug("method " + thisMethod.toString() + " calls " + m.toString());
-									calledMethods.add(me);
-									me.calledByMethods.add(thisMethodEntry);
-								}
-								break;
-							}
+				String name = methodExpression.getReferenceName();
+				PsiElement c = null;
+				if (name == null ||
+						PsiKeyword.THIS.equals(name) ||
+						possibleMethods.hasMethodNamed(name)) {
+					c = methodExpression.resolve();
+				}
+				MethodEntry me = c == null ? null : possibleMethods.getMethodEntry(c);
+				if (me != null) {
+					PsiMethod m = (PsiMethod) me.end;
+					if (settings.isKeepOverloadedMethodsTogether() &&
+							m.getName().equals(thisMethod.getName())) {
+						logger.debug("method " + me + " is overload, not inserted in call graph");
+					} else {
+						me.callCount++;
+						if (calledMethods.add(me)) {
+							// if the called method is already in our set, it is not added again.
+							logger.debug("method " + thisMethod.toString() + " calls " + m.toString());
+							me.calledByMethods.add(thisMethodEntry);
 						}
 					}
 				}
@@ -1150,15 +1166,15 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 	}
 
 	/**
-	 * Called when getters and setters are to be kept together in pairs.  Searches the list of entries for any
+	 * Called when getters and setters are to be kept together in pairs.  Looks up in the class member index any
 	 * getter/setter methods that matches this getter method.  Normally there is only one setter per getter, but one
 	 * could have a "getXXX", "isXXX" and "setXXX" trio which need to be related.  In this case, the first getter
 	 * encountered finds the other getter and setter and the three will be emitted in that order.
 	 *
-	 * @param possibleMethods entry list, possibly containing the corresponding setter for this getter.
+	 * @param possibleMethods index of the class members, possibly containing the corresponding setter for this getter.
 	 * @param settings
 	 */
-	private void determineSetter(List<ClassContentsEntry> possibleMethods, RearrangerSettings settings) {
+	private void determineSetter(ClassMemberIndex possibleMethods, RearrangerSettings settings) {
 		if (!isGetter())      // wasted assertion, already checked before calling
 		{
 			return;
@@ -1167,75 +1183,61 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		String thisProperty = MethodUtil.getPropertyName(thisMethod);
 		if (isGetter() && !keptWithProperty) {
 			if (settings.isKeepGettersSettersWithProperty()) {
-				hookGetterToProperty(possibleMethods);
+				hookGetterToProperty(possibleMethods, thisProperty);
 			}
 		}
-		for (ClassContentsEntry o : possibleMethods) {
-			if (o instanceof IRelatableEntry) {
-				MethodEntry me = (MethodEntry) o;
-				// don't use a setter twice (could be two methods which both look like getters; assign the setter
-				// to only one of them.)  Also, associate all getter/setter methods for the same property with the
-				// first one encountered.
-				if ((me.isSetter() ||
-						me.isGetter()) &&
-						me.correspondingGetterSetters.size() == 0 &&
-						me != this) {
-					PsiMethod m = (PsiMethod) me.end;
-					String otherProperty = MethodUtil.getPropertyName(m);
-					if (thisProperty.equals(otherProperty)) {
-						logger.debug("method " + thisMethod.toString() + " is getter; its setter is " + m.toString());
-						// place getters ahead of setters
-						if (me.isGetter()) {
-							correspondingGetterSetters.add(0, me);
-							// clear the getter flag and set the setter flag; this causes the method to be emitted
-							// under the first getter encountered.
-							me.setGetter(false);
-							me.setSetter(true);
-						} else {
-							correspondingGetterSetters.add(me);
-						}
-						me.correspondingGetterSetters.add(this);
-					}
+		for (MethodEntry me : possibleMethods.getGettersSetters(thisProperty)) {
+			// don't use a setter twice (could be two methods which both look like getters; assign the setter
+			// to only one of them.)  Also, associate all getter/setter methods for the same property with the
+			// first one encountered.
+			if ((me.isSetter() ||
+					me.isGetter()) &&
+					me.correspondingGetterSetters.size() == 0 &&
+					me != this) {
+				PsiMethod m = (PsiMethod) me.end;
+				logger.debug("method " + thisMethod.toString() + " is getter; its setter is " + m.toString());
+				// place getters ahead of setters
+				if (me.isGetter()) {
+					correspondingGetterSetters.add(0, me);
+					// clear the getter flag and set the setter flag; this causes the method to be emitted
+					// under the first getter encountered.
+					me.setGetter(false);
+					me.setSetter(true);
+				} else {
+					correspondingGetterSetters.add(me);
 				}
+				me.correspondingGetterSetters.add(this);
 			}
 		}
 	}
 
 	/**
-	 * Getters/Setters are supposed to be kept with their associated property.  Search the list of entries to find the
-	 * property and attach the setter.
+	 * Getters/Setters are supposed to be kept with their associated property.  Look up the property in the index of
+	 * class members and attach the getter to the first field not yet having one.
 	 *
-	 * @param entries list of all items (methods, fields) in the class.
+	 * @param index index of all items (methods, fields) in the class.
+	 * @param property property name of this getter.
 	 */
-	private void hookGetterToProperty(List<ClassContentsEntry> entries) {
-		ListIterator<ClassContentsEntry> li = entries.listIterator();
-		String property = MethodUtil.getPropertyName((PsiMethod) end);
-		while (li.hasNext()) {
-			Object o = li.next();
-			if (o instanceof FieldEntry) {
-				FieldEntry fe = (FieldEntry) o;
-				StringBuffer sb = new StringBuffer(fe.getName());
-				sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
-				if (fe.getGetterMethod() == null && property.equals(sb.toString())) {
-					fe.setGetterMethod(this);
-					keptWithProperty = true;
-					break;
-				}
+	private void hookGetterToProperty(ClassMemberIndex index, String property) {
+		for (FieldEntry fe : index.getFields(property)) {
+			if (fe.getGetterMethod() == null) {
+				fe.setGetterMethod(this);
+				keptWithProperty = true;
+				break;
 			}
 		}
 	}
 
 	@Override
 	public void emit(Emitter emitter) {
-		StringBuffer sb = emitter.getStringBuffer();
 		if (getCustomizedPrecedingComment().length() > 0) {
-			sb.append("\n");
-			sb.append(getCustomizedPrecedingComment());
+			emitter.append('\n');
+			emitter.append(getCustomizedPrecedingComment());
 		}
-		emitAllElements(sb, emitter.getDocument());
+		emitAllElements(emitter);
 		if (getCustomizedTrailingComment().length() > 0) {
-			sb.append("\n");
-			sb.append(getCustomizedTrailingComment());
+			emitter.append('\n');
+			emitter.append(getCustomizedTrailingComment());
 		}
 		/**
 		 * emit corresponding setter, overloaded methods, and related methods, if any.
@@ -1254,59 +1256,21 @@ public class MethodEntry extends ClassContentsEntry implements IRelatableEntry {
 		}
 	}
 
+	/**
+	 * protect body of method from removing newlines: the header extends up to and including the open brace.  Abstract
+	 * methods have no body, so their whole text is the header.
+	 */
 	@Override
-	protected void emitAllElements(StringBuffer sb, Document document) {
-		if (alternateValue != null) {
-			/**
-			 * protect body of method from removing newlines.
-			 */
-			int brace = alternateValue.indexOf('{');
-			String temp = "";
-			if (brace >= 0) {
-				// every method should have an open brace -- unless it is abstract.
-				temp = alternateValue.substring(brace + 1);
-				alternateValue = alternateValue.substring(0, brace + 1);
-			}
-			super.emitAllElements(sb, document);
-			sb.append(temp);
-		} else {
-			super.emitAllElements(sb, document);
+	int getHeaderEndOffset() {
+		PsiCodeBlock body = ((PsiMethod) end).getBody();
+		if (body == null) {
+			return end.getTextRange().getEndOffset();
 		}
-	}
-
-	public void insertInterfaceOrder(List<MethodEntry> list) {
-		Comparator<MethodEntry> comparator = new Comparator<MethodEntry>() {
-
-			@Override
-			public int compare(MethodEntry o1, MethodEntry o2) {
-				final int offset1 = getMethodOffsetInInterface((PsiMethod) o1.end);
-				final int offset2 = getMethodOffsetInInterface((PsiMethod) o2.end);
-				if (offset1 < offset2) {
-					return -1;
-				}
-				if (offset1 == offset2) {
-					return 0;
-				}
-				return 1;
-			}
-
-		};
-		insertInList(list, comparator);
-	}
-
-	private int getMethodOffsetInInterface(PsiMethod method) {
-		final PsiMethod[] superMethods = method.findSuperMethods();
-//        final PsiMethod[] superMethods = PsiSuperMethodUtil.findSuperMethods(method); // todo - for IDEA 5.0
-		if (superMethods.length == 0) {
-			return 0;
+		PsiJavaToken lBrace = body.getLBrace();
+		if (lBrace == null) {
+			return body.getTextRange().getStartOffset();
 		}
-		PsiMethod m = superMethods[0];
-		PsiElement parent = m.getParent();
-		if (parent instanceof PsiClass && ((PsiClass) parent).isInterface()) {
-			return m.getTextOffset();
-		}
-		return getMethodOffsetInInterface(m);
+		return lBrace.getTextRange().getEndOffset();
 	}
 
 }
-
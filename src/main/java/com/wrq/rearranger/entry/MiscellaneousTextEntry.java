@@ -76,4 +76,26 @@ public class MiscellaneousTextEntry
 		return null;
 	}
 
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * Headers and trailers declare nothing; all of their text may hold separator comments.
+	 */
+	@Override
+	int appendLeadingText(StringBuilder sb) {
+		PsiElement e = start;
+		while (e != null && e != end) {
+			if (e == end.getParent()) {
+				e = e.getFirstChild();
+			} else {
+				sb.append(e.getText());
+				e = e.getNextSibling();
+			}
+		}
+		if (e == end) {
+			sb.append(end.getText());
+		}
+		return end.getTextRange().getEndOffset();
+	}
+
 }
@@ -26,7 +26,7 @@ import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiWhiteSpace;
-import com.wrq.rearranger.settings.RearrangerSettings;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 
 import java.util.List;
 
@@ -40,8 +40,8 @@ public class PsiFileEntry extends ClassEntry {
 
 // --------------------------- CONSTRUCTORS ---------------------------
 
-	public PsiFileEntry(RearrangerSettings settings) {
-		super(null, null, 0, "", null, 0, settings);
+	public PsiFileEntry(RearrangementContext context) {
+		super(null, null, 0, "", null, 0, context);
 	}
 
 // -------------------------- OTHER METHODS --------------------------
@@ -60,33 +60,34 @@ public class PsiFileEntry extends ClassEntry {
 			PsiElement psiFile,
 			List commentList) {
 		int startingIndex = 0;
-		for (int i = 0; i < psiFile.getChildren().length; i++) {
-			PsiElement child = psiFile.getChildren()[i];
+		PsiElement[] children = psiFile.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			PsiElement child = children[i];
 			if (child instanceof PsiClass) {
 				do {
 					startingIndex = i;
 					i--;
 					if (i >= 0) {
-						child = psiFile.getChildren()[i];
+						child = children[i];
 					} else {
 						break;
 					}
 				}
 				while (child instanceof PsiWhiteSpace ||
 						child instanceof PsiComment ||
-						child.getText().length() == 0);
+						child.getTextLength() == 0);
 				break;
 			}
 		}
 		MiscellaneousTextEntry miscellaneousTextEntry = null;
 		if (startingIndex > 0) {
 			miscellaneousTextEntry = new MiscellaneousTextEntry(
-					psiFile.getChildren()[0],
-					psiFile.getChildren()[startingIndex - 1],
+					children[0],
+					children[startingIndex - 1],
 					true, false
 			);
 		}
-		parseRemainingClassContents(project, startingIndex, psiFile);
+		parseRemainingClassContents(project, startingIndex, psiFile, children);
 		if (miscellaneousTextEntry != null) {
 			contents.add(0, miscellaneousTextEntry);
 		}
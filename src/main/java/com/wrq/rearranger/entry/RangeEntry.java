@@ -22,14 +22,18 @@
 package com.wrq.rearranger.entry;
 
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiClassInitializer;
+import com.intellij.psi.PsiComment;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiWhiteSpace;
 import com.wrq.rearranger.popup.RearrangerTreeNode;
 import com.wrq.rearranger.rearrangement.Emitter;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.RearrangerSettings;
-import com.wrq.rearranger.util.CommentUtil;
-import java.util.regex.Matcher;
 import javax.swing.tree.DefaultMutableTreeNode;
 
 /**
@@ -41,8 +45,18 @@ public abstract class RangeEntry implements IPopupTreeRangeEntry {
 
 // ------------------------------ FIELDS ------------------------------
 
+	/**
+	 * replacement for the text preceding the declaration of this entry, once separator comments have been removed from
+	 * it; null if nothing was removed.
+	 */
 	String alternateValue;
 
+	/**
+	 * offset at which the declaration of this entry begins, following its leading comments and white space; -1 until
+	 * separator comments have been checked for.
+	 */
+	private int declarationOffset = -1;
+
 	final String name;
 
 	protected final PsiElement start;
@@ -111,6 +125,22 @@ public abstract class RangeEntry implements IPopupTreeRangeEntry {
 		return end;
 	}
 
+	/**
+	 * @return the kind of this entry, one of the EntryKind constants.
+	 */
+	public int getEntryKind() {
+		if (end instanceof PsiField) {
+			return EntryKind.FIELD;
+		}
+		if (end instanceof PsiMethod) {
+			return EntryKind.METHOD;
+		}
+		if (end instanceof PsiClassInitializer) {
+			return EntryKind.INITIALIZER;
+		}
+		return EntryKind.OTHER;
+	}
+
 	public IRuleInstance getMatchedRule() {
 		return matchedRule;
 	}
@@ -190,117 +220,131 @@ public abstract class RangeEntry implements IPopupTreeRangeEntry {
 
 // -------------------------- OTHER METHODS --------------------------
 
-	public void checkForComment() {
-		if (CommentUtil.getCommentMatchers().isEmpty()) {
+	public void checkForComment(RearrangementContext context) {
+		if (context.getCommentScanner().isEmpty()) {
 			return;
 		}
-		createAlternateValueString();
+		StringBuilder leadingText = new StringBuilder();
+		declarationOffset = appendLeadingText(leadingText);
 		/**
-		 * for each separator comment specified by the user, check to see if this comment matches.
+		 * remove every separator comment specified by the user.
 		 */
-		for (Matcher matcher : CommentUtil.getCommentMatchers()) {
-			matcher.reset(alternateValue);
-
-			boolean foundMatch = matcher.find();
-
-			if (foundMatch) {
-				logger.debug("found comment pattern '" +
-						matcher.pattern().pattern().replaceAll("\n", "#") +
-						"' in '" +
-						alternateValue.replaceAll("\n", "#") +
-						"'");
-				StringBuffer sb = new StringBuffer(alternateValue.length());
-				do {
-					boolean leadingNewlines = start.getTextRange().getStartOffset() > 0;
-					matcher.appendReplacement(
-							sb,
-							leadingNewlines ? "\n" : ""
-					);
-					foundMatch = matcher.find();
-				} while (foundMatch);
-				matcher.appendTail(sb);
-				alternateValue = sb.toString();
-				logger.debug("RangeEntry alternateValue=" + alternateValue.replaceAll("\n", "#"));
-			}
+		String text = leadingText.toString();
+		boolean leadingNewlines = start.getTextRange().getStartOffset() > 0;
+		String value = context.getCommentScanner().removeComments(text, leadingNewlines ? "\n" : "");
+		if (value != text) {
+			alternateValue = value;
+			logger.debug("RangeEntry alternateValue=" + alternateValue.replaceAll("\n", "#"));
 		}
 	}
 
-	protected void createAlternateValueString() {
-		if (alternateValue != null) {
-			return;
-		}
-		final StringBuffer sb = new StringBuffer(
-				end.getTextRange().getEndOffset() -
-						start.getTextRange().getStartOffset()
-		);
+	/**
+	 * Appends the white space and comments from the start of this entry up to its declaration, including those the
+	 * parser attached to the declaring element itself.  Separator comments can only occur there; the rest of the
+	 * entry, such as a method body, is never examined.
+	 *
+	 * @param sb buffer receiving the leading text.
+	 *
+	 * @return offset of the first character of the declaration.
+	 */
+	int appendLeadingText(StringBuilder sb) {
+		final int endOffset = end.getTextRange().getEndOffset();
 		PsiElement e = start;
-		while (e != null && e != end) {
-			if (e == end.getParent()) {
+		while (e != null && e.getTextRange().getStartOffset() < endOffset) {
+			if (e instanceof PsiComment || e instanceof PsiWhiteSpace || e.getTextLength() == 0) {
+				sb.append(e.getText());
+				PsiElement next = e.getNextSibling();
+				while (next == null && e.getParent() != null) {
+					e = e.getParent();
+					next = e.getNextSibling();
+				}
+				e = next;
+			} else if (e.getFirstChild() != null) {
 				e = e.getFirstChild();
 			} else {
-				sb.append(e.getText());
-				e = e.getNextSibling();
+				return e.getTextRange().getStartOffset();
 			}
 		}
-		if (e == end) {
-			sb.append(end.getText());
-		}
-		alternateValue = sb.toString();
+		return endOffset;
+	}
+
+	/**
+	 * @return offset up to which blank lines are removed when a separator comment precedes this entry.  By default only
+	 * the leading text is affected.
+	 */
+	int getHeaderEndOffset() {
+		return declarationOffset;
 	}
 
 	public void emit(Emitter emitter) {
-		emitAllElements(emitter.getStringBuffer(), emitter.getDocument());
+		emitAllElements(emitter);
 	}
 
-	protected void emitAllElements(StringBuffer sb, Document document) {
-		if (alternateValue != null) {
-			String result = alternateValue;
+	/**
+	 * Appends the text of this entry to the emitted document.  Text is copied directly from the original document text
+	 * by offset range; only the leading text, and the header when a separator comment precedes the entry, may be
+	 * emitted as a modified string.
+	 *
+	 * @param emitter emitter receiving the rearranged document.
+	 */
+	protected void emitAllElements(Emitter emitter) {
+		if (declarationOffset >= 0) {
 			if (separatorCommentPrecedes) {
+				String leadingText = alternateValue;
+				if (leadingText == null) {
+					leadingText = emitter.getDocumentText()
+							.subSequence(start.getTextRange().getStartOffset(), declarationOffset)
+							.toString();
+				}
+				int headerEndOffset = getHeaderEndOffset();
+				String value = leadingText + emitter.getDocumentText()
+						.subSequence(declarationOffset, headerEndOffset);
 				// remove all leading blank lines.  The only blank lines we want are the ones explicitly appended
 				// to the preceding separator comment.
 				logger.debug("emitAllElements: separator comment precedes " +
 						name + "; original value=" +
-						alternateValue.replaceAll("\n", "#"));
-				result = alternateValue.replaceFirst("\n[ \t\n]*\n", "\n");
+						value.replaceAll("\n", "#"));
+				value = value.replaceFirst("\n[ \t\n]*\n", "\n");
 				logger.debug("emitAllElements: resulting value=" +
-						alternateValue.replaceAll("\n", "#"));
+						value.replaceAll("\n", "#"));
+				emitter.append(value);
+				emitter.appendOriginal(headerEndOffset, end.getTextRange().getEndOffset());
+				return;
+			}
+			if (alternateValue != null) {
+				emitter.append(alternateValue);
+			} else {
+				emitter.appendOriginal(start.getTextRange().getStartOffset(), declarationOffset);
 			}
-			sb.append(result);
+			emitter.appendOriginal(declarationOffset, end.getTextRange().getEndOffset());
 		} else {
 			PsiElement curr = start;
 			while (curr != null && curr != end) {
 				if (curr == end.getParent()) {
 					curr = curr.getFirstChild();
 				} else {
-					emitElement(curr, sb, document);
+					emitElement(curr, emitter);
 					curr = curr.getNextSibling();
 				}
 			}
 			if (curr == end) {
-				emitElement(end, sb, document);
+				emitElement(end, emitter);
 			}
 		}
 	}
 
-	private void emitElement(PsiElement curr, StringBuffer sb, Document document) {
+	private void emitElement(PsiElement curr, Emitter emitter) {
+		TextRange range = curr.getTextRange();
 		try {
-			sb.append(
-					document.getCharsSequence().toString().toCharArray(),  // for Irida (builds 3185 etc).
-					curr.getTextRange().getStartOffset(),
-					curr.getTextRange().getEndOffset() - curr.getTextRange().getStartOffset()
-			);
-		} catch (ArrayIndexOutOfBoundsException oob) {
+			emitter.appendOriginal(range.getStartOffset(), range.getEndOffset());
+		} catch (IndexOutOfBoundsException oob) {
 			logger.error("internal error attempting to append text to document");
-			logger.error("document.getCharsSequence.length=" + document.getCharsSequence().length());
-			logger.error(
-					"document.getCharsSequence.toString().length=" + document.getCharsSequence().toString().length());
-			logger.error(
-					"document...toCharArray.length=" + document.getCharsSequence().toString().toCharArray().length);
+			logger.error("document text length=" + emitter.getDocumentText().length());
 			logger.error("current PSI element=" + curr.toString());
 			logger.error("current PSI element text=" + curr.getText());
-			logger.error("current PSI element text range, start offset=" + curr.getTextRange().getStartOffset());
-			logger.error("current PSI element text range, end offset=" + curr.getTextRange().getEndOffset());
-			logger.error("current PSI element text range, length=" + curr.getTextRange().getLength());
+			logger.error("current PSI element text range, start offset=" + range.getStartOffset());
+			logger.error("current PSI element text range, end offset=" + range.getEndOffset());
+			logger.error("current PSI element text range, length=" + range.getLength());
 			logger.error(oob);
 			throw oob;
 		}
@@ -26,6 +26,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.psi.PsiFile;
 import com.wrq.rearranger.LiveRearrangerActionHandler;
 import com.wrq.rearranger.rearrangement.Emitter;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
@@ -64,6 +65,8 @@ public class LiveRearrangerDialog
 
 	final RearrangerSettingsImplementation settings;
 
+	final RearrangementContext context;
+
 	PopupTreeComponent treeComponent;
 
 	List<IRuleInstance> resultRuleInstances;
@@ -91,9 +94,10 @@ public class LiveRearrangerDialog
 // --------------------------- CONSTRUCTORS ---------------------------
 
 	public LiveRearrangerDialog(
-			RearrangerSettingsImplementation settings, PsiFile psiFile, Document document,
-			final Window outerPanel, int cursorOffset) {
+			RearrangerSettingsImplementation settings, RearrangementContext context, PsiFile psiFile,
+			Document document, final Window outerPanel, int cursorOffset) {
 		this.settings = settings;
+		this.context = context;
 		this.document = document;
 		this.psiFile = psiFile;
 		createFilePopupEntry(psiFile);
@@ -371,11 +375,11 @@ public class LiveRearrangerDialog
 		}
 		logger.debug("rearranging document");
 		if (document != null) {
-			final Emitter e = new Emitter(psiFile, resultRuleInstances, document);
+			final Emitter e = new Emitter(psiFile, resultRuleInstances, document, context);
 			e.emitRearrangedDocument();
 		}
 
-		LiveRearrangerActionHandler.setInProgress(false);
+		LiveRearrangerActionHandler.setInProgress(document, false);
 		logger.debug("exit finish() on thread " + Thread.currentThread().getName());
 	}
 
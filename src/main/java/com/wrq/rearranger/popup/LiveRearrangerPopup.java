@@ -31,6 +31,7 @@ import com.intellij.psi.PsiFile;
 import com.wrq.rearranger.LiveRearrangerActionHandler;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.rearrangement.Emitter;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
@@ -87,6 +88,8 @@ public class LiveRearrangerPopup
 
 	final RearrangerSettingsImplementation settings;
 
+	final RearrangementContext context;
+
 	PopupTreeComponent treeComponent;
 
 	List<IRuleInstance> resultRuleInstances;
@@ -136,12 +139,14 @@ public class LiveRearrangerPopup
 
 	public LiveRearrangerPopup(
 			RearrangerSettingsImplementation settings,
+			RearrangementContext context,
 			final IFilePopupEntry psiFileEntry,
 			Window outerPanel,
 			Document document,
 			Project project) {
 		logger.debug("entered LiveRearrangerPopup constructor");
 		this.settings = settings;
+		this.context = context;
 		this.outerPanel = outerPanel;
 		this.psiFileEntry = psiFileEntry;
 		this.document = document;
@@ -150,9 +155,10 @@ public class LiveRearrangerPopup
 	}
 
 	public LiveRearrangerPopup(
-			RearrangerSettingsImplementation settings, PsiFile psiFile, Document document, Project project,
-			final Window outerPanel, int cursorOffset) {
+			RearrangerSettingsImplementation settings, RearrangementContext context, PsiFile psiFile,
+			Document document, Project project, final Window outerPanel, int cursorOffset) {
 		this.settings = settings;
+		this.context = context;
 		this.document = document;
 		this.psiFile = psiFile;
 		createFilePopupEntry(psiFile);
@@ -490,7 +496,7 @@ public class LiveRearrangerPopup
 //        ToolTipManager.sharedInstance().setLightWeightPopupEnabled(wasLightWeight);
 		if (!rearrangementOccurred) {
 			logger.debug("no rearrangement occurred, not rearranging document");
-			LiveRearrangerActionHandler.setInProgress(false);
+			LiveRearrangerActionHandler.setInProgress(document, false);
 			return;
 		}
 		logger.debug("rearranging document");
@@ -499,7 +505,7 @@ public class LiveRearrangerPopup
 			@Override
 			public void run() {
 				if (document != null) {
-					final Emitter e = new Emitter(psiFile, resultRuleInstances, document);
+					final Emitter e = new Emitter(psiFile, resultRuleInstances, document, context);
 					e.emitRearrangedDocument();
 				}
 			}
@@ -518,7 +524,7 @@ public class LiveRearrangerPopup
 				}
 		);
 
-		LiveRearrangerActionHandler.setInProgress(false);
+		LiveRearrangerActionHandler.setInProgress(document, false);
 		logger.debug("exit finish() on thread " + Thread.currentThread().getName());
 	}
 
@@ -647,7 +653,7 @@ public class LiveRearrangerPopup
 		constraints.gridy = 0;
 		LiveRearrangerPopup lrp = new LiveRearrangerPopup(
 				// getProject(),
-				settings, pf, frame, null,
+				settings, null, pf, frame, null,
 				null
 		);
 //        final JPanel object = lrp.getContainerPanel();
@@ -710,7 +716,7 @@ public class LiveRearrangerPopup
 //                            popup.repaint();
 							logger.debug("outerPanel size=" + d + ", containerPanel preferred size=" + c);
 							logger.debug("Constructing Popup at x,y=" + x + "," + y);
-							LiveRearrangerActionHandler.setInProgress(true);
+							LiveRearrangerActionHandler.setInProgress(document, true);
 
 //                            popup.addWindowFocusListener(windowFocusListener);
 //                            popup.addWindowListener(windowAdapter);
@@ -24,11 +24,17 @@ package com.wrq.rearranger.rearrangement;
 import com.intellij.openapi.editor.Document;
 import com.intellij.psi.PsiFile;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
+import com.wrq.rearranger.util.DocumentEdits;
 
 import java.util.List;
 
 /**
  * Emits a new document from the rearranged entries.
+ * <p/>
+ * The emission of the file, and of each class's contents, starts by comparing with the original text instead of
+ * building text.  At the first difference, the text reproduced so far is copied from the original as one block and
+ * emission continues normally; every entry is emitted once.  If the whole file is reproduced, the document is left
+ * untouched.
  */
 public class Emitter {
 
@@ -40,36 +46,132 @@ public class Emitter {
 
 	private Document document;
 
-	private StringBuffer stringBuffer;
+	private final RearrangementContext context;
+
+	/**
+	 * read-only view of the original document text, shared by all entries for the duration of this emission.
+	 */
+	private final CharSequence documentText;
+
+	private StringBuilder stringBuilder;
+
+	/**
+	 * while comparing, offset in the original document text at which the comparison started.
+	 */
+	private int compareStart;
+
+	/**
+	 * while comparing, offset in the original document text which the next emitted text must reproduce; everything
+	 * emitted since the comparison started has reproduced the text from compareStart up to here.  -1 when text is
+	 * being emitted.
+	 */
+	private int compareOffset = -1;
 
 // --------------------------- CONSTRUCTORS ---------------------------
 
-	public Emitter(PsiFile psiFile, List<IRuleInstance> resultRuleInstances, Document document) {
+	public Emitter(
+			PsiFile psiFile, List<IRuleInstance> resultRuleInstances, Document document, RearrangementContext context) {
 		this.psiFile = psiFile;
 		this.resultRuleInstances = resultRuleInstances;
 		this.document = document;
-		stringBuffer = new StringBuffer(psiFile.getText().length() + 100); // room for inserted blank lines
+		this.context = context;
+		documentText = document.getImmutableCharSequence();
+		stringBuilder = new StringBuilder(documentText.length() + 100); // room for inserted blank lines
 	}
 
 // --------------------- GETTER / SETTER METHODS ---------------------
 
+	public RearrangementContext getContext() {
+		return context;
+	}
+
 	public Document getDocument() {
 		return document;
 	}
 
-	public StringBuffer getStringBuffer() {
-		return stringBuffer;
+	public CharSequence getDocumentText() {
+		return documentText;
 	}
 
 // -------------------------- OTHER METHODS --------------------------
 
+	/**
+	 * Append generated text, such as a comment.
+	 */
+	public void append(CharSequence text) {
+		if (compareOffset >= 0) {
+			final int length = text.length();
+			if (compareOffset + length <= documentText.length() && regionMatches(text, 0, compareOffset, length)) {
+				compareOffset += length;
+				return;
+			}
+			endComparison();
+		}
+		stringBuilder.append(text);
+	}
+
+	public void append(char c) {
+		if (compareOffset >= 0) {
+			if (compareOffset < documentText.length() && documentText.charAt(compareOffset) == c) {
+				compareOffset++;
+				return;
+			}
+			endComparison();
+		}
+		stringBuilder.append(c);
+	}
+
+	/**
+	 * Append a range of the original document text.
+	 */
+	public void appendOriginal(int startOffset, int endOffset) {
+		if (compareOffset >= 0) {
+			final int length = endOffset - startOffset;
+			// text from elsewhere in the document may still be identical, e.g. when equal fields are swapped.
+			if (startOffset == compareOffset ||
+					compareOffset + length <= documentText.length() &&
+							regionMatches(documentText, startOffset, compareOffset, length)) {
+				compareOffset += length;
+				return;
+			}
+			endComparison();
+		}
+		stringBuilder.append(documentText, startOffset, endOffset);
+	}
+
+	/**
+	 * @return number of characters emitted so far.
+	 */
+	public int length() {
+		return stringBuilder.length() + (compareOffset < 0 ? 0 : compareOffset - compareStart);
+	}
+
+	/**
+	 * Replaces the text of the file with its rearranged text, unless they are identical.
+	 */
 	public void emitRearrangedDocument() {
-		emitRuleInstances(resultRuleInstances);
-		document.replaceString(
-				psiFile.getTextRange().getStartOffset(),
-				psiFile.getTextRange().getEndOffset(),
-				stringBuffer.toString()
-		);
+		if (emitRearrangedText() != null) {
+			DocumentEdits.replace(
+					document,
+					psiFile.getTextRange().getStartOffset(),
+					psiFile.getTextRange().getEndOffset(),
+					stringBuilder
+			);
+		}
+	}
+
+	/**
+	 * Emits the rearranged text of the file without changing the document.
+	 *
+	 * @return rearranged text of the file, or null if it is identical to the current text.
+	 */
+	public CharSequence emitRearrangedText() {
+		if (emitComparing(
+				resultRuleInstances, psiFile.getTextRange().getStartOffset(), psiFile.getTextRange().getEndOffset()
+		)) {
+			return null;
+		}
+		return stringBuilder;
 	}
 
 	public void emitRuleInstances(Iterable<IRuleInstance> resultRuleInstances) {
@@ -80,4 +182,55 @@ public class Emitter {
 		}
 	}
 
+	/**
+	 * Emits the rule instances which replace the original document text between the given offsets.  If they reproduce
+	 * the original text exactly, it is copied as one block.  Within an enclosing comparison, the rule instances are
+	 * simply emitted as part of it.
+	 */
+	public void emitRuleInstances(Iterable<IRuleInstance> ruleInstances, int startOffset, int endOffset) {
+		if (compareOffset >= 0) {
+			emitRuleInstances(ruleInstances);
+		} else if (emitComparing(ruleInstances, startOffset, endOffset)) {
+			stringBuilder.append(documentText, startOffset, endOffset);
+		}
+	}
+
+	/**
+	 * Emits the rule instances, comparing with the original document text starting at the given offset.  If they
+	 * differ, the emitted text is complete when this returns; otherwise nothing has been emitted.
+	 *
+	 * @return true if the rule instances reproduce exactly the original text between the given offsets.
+	 */
+	private boolean emitComparing(Iterable<IRuleInstance> ruleInstances, int startOffset, int endOffset) {
+		compareStart = startOffset;
+		compareOffset = startOffset;
+		emitRuleInstances(ruleInstances);
+		if (compareOffset == endOffset) {
+			compareOffset = -1;
+			return true;
+		}
+		if (compareOffset >= 0) {
+			endComparison();
+		}
+		return false;
+	}
+
+	/**
+	 * Ends the current comparison: the text reproduced so far is copied from the original, and text is emitted from
+	 * here on.
+	 */
+	private void endComparison() {
+		stringBuilder.append(documentText, compareStart, compareOffset);
+		compareOffset = -1;
+	}
+
+	private boolean regionMatches(CharSequence text, int textOffset, int documentOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(textOffset + i) != documentText.charAt(documentOffset + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
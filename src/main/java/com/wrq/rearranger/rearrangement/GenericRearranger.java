@@ -37,7 +37,6 @@ import com.wrq.rearranger.settings.attributeGroups.TrailerRule;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
 
 /**
  * Template for generic rearrangement of items in a class or in a Java file.
@@ -154,36 +153,44 @@ public abstract class GenericRearranger {
 	}
 
 	/**
-	 * For each rule (in prioritized order), test all remaining entries to identify those that match. Exclude any
-	 * extracted (i.e. related) methods and any setter methods that will be emitted with a corresponding getter.  If an
-	 * entry matches the rule, add it to the list of entries matching the rule and remove it from the list of remaining
-	 * entries.
+	 * For each remaining entry, find the highest priority rule that matches it.  Exclude any extracted (i.e. related)
+	 * methods and any setter methods that will be emitted with a corresponding getter.  If an entry matches a rule, add
+	 * it to the list of entries matching the rule and remove it from the list of remaining entries.
+	 * <p/>
+	 * This is equivalent to testing all remaining entries against each rule in prioritized order, since an entry is
+	 * claimed by the first rule it matches and each rule instance still receives its entries in original order.
 	 *
 	 * @param prioritizedRules prioritized list of rules
 	 */
-	@SuppressWarnings({"StringContatenationInLoop"})
 	private void matchPrioritizedRules(List<IRuleInstance> prioritizedRules) {
-		for (IRuleInstance ruleInstance : prioritizedRules) {
-			final IRule rule = ruleInstance.getRule();
-			final ListIterator entryIterator = entries.listIterator();
-			while (entryIterator.hasNext()) {
-				final RangeEntry entry = (RangeEntry) entryIterator.next();
-				if (entry instanceof IRelatableEntry) {
-					// if this is an extracted (i.e. related) method, or
-					// if this is a setter that will be emitted under the corresponding getter,
-					// don't test it for match against the rule.
-					final IRelatableEntry relatableEntry = (IRelatableEntry) entry;
-					if (relatableEntry.isRelatedMethod() || relatableEntry.isEmittableSetter()) {
-						continue;
-					}
-				}
-				if (rule.isMatch(entry)) {
-					logger.debug("rule:" + rule.toString() + "; entry matched:" + entry.getEnd().toString());
-					ruleInstance.addEntry(entry);
-					entry.setMatchedRule(ruleInstance);
-					entryIterator.remove();
+		final RuleMatcher ruleMatcher = new RuleMatcher(prioritizedRules);
+		final List<ClassContentsEntry> unmatchedEntries = new ArrayList<ClassContentsEntry>(entries.size());
+		for (ClassContentsEntry entry : entries) {
+			if (entry instanceof IRelatableEntry) {
+				// if this is an extracted (i.e. related) method, or
+				// if this is a setter that will be emitted under the corresponding getter,
+				// don't test it for match against any rule.
+				final IRelatableEntry relatableEntry = (IRelatableEntry) entry;
+				if (relatableEntry.isRelatedMethod() || relatableEntry.isEmittableSetter()) {
+					unmatchedEntries.add(entry);
+					continue;
 				}
 			}
+			final IRuleInstance ruleInstance = ruleMatcher.findMatch(entry);
+			if (ruleInstance != null) {
+				logger.debug(
+						"rule:" + ruleInstance.getRule().toString() + "; entry matched:" + entry.getEnd().toString()
+				);
+				ruleInstance.addEntry(entry);
+				entry.setMatchedRule(ruleInstance);
+			} else {
+				unmatchedEntries.add(entry);
+			}
+		}
+		entries.clear();
+		entries.addAll(unmatchedEntries);
+		for (IRuleInstance ruleInstance : prioritizedRules) {
+			ruleInstance.finishMatching();
 		}
 	}
 
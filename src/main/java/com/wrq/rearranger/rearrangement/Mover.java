@@ -37,18 +37,19 @@ public class Mover {
 
 	private final List<ClassContentsEntry> outerClasses;
 
-	private final RearrangerSettings settings;
+	private final RearrangementContext context;
 
 // --------------------------- CONSTRUCTORS ---------------------------
 
-	public Mover(List<ClassContentsEntry> outerClasses, RearrangerSettings settings) {
+	public Mover(List<ClassContentsEntry> outerClasses, RearrangementContext context) {
 		this.outerClasses = new ArrayList<ClassContentsEntry>(outerClasses);
-		this.settings = settings;
+		this.context = context;
 	}
 
 // -------------------------- OTHER METHODS --------------------------
 
 	public List<IRuleInstance> rearrangeOuterClasses() {
+		RearrangerSettings settings = context.getSettings();
 		GenericRearranger outerClassRearranger = new GenericRearranger(
 				settings.getClassOrderAttributeList(), outerClasses, 0, settings
 		) {
@@ -28,7 +28,6 @@ import com.wrq.rearranger.entry.ClassContentsEntry;
 import com.wrq.rearranger.entry.ClassEntry;
 import com.wrq.rearranger.entry.PsiFileEntry;
 import com.wrq.rearranger.entry.RangeEntry;
-import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
 
 import java.util.List;
@@ -44,15 +43,15 @@ public class Parser {
 
 	private Project project;
 
-	private RearrangerSettings settings;
+	private RearrangementContext context;
 
 	private PsiFile psiFile;
 
 // --------------------------- CONSTRUCTORS ---------------------------
 
-	public Parser(Project project, RearrangerSettings settings, PsiFile psiFile) {
+	public Parser(Project project, RearrangementContext context, PsiFile psiFile) {
 		this.project = project;
-		this.settings = settings;
+		this.context = context;
 		this.psiFile = psiFile;
 	}
 
@@ -78,8 +77,8 @@ public class Parser {
 		/**
 		 * Parse the top level contents of the PsiFile here.
 		 */
-		PsiFileEntry fileEntry = new PsiFileEntry(settings);
-		return fileEntry.parseFile(project, psiFile, settings.getClassOrderAttributeList());
+		PsiFileEntry fileEntry = new PsiFileEntry(context);
+		return fileEntry.parseFile(project, psiFile, context.getSettings().getClassOrderAttributeList());
 	}
 
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.rearrangement;
+
+import com.wrq.rearranger.settings.RearrangerSettings;
+import com.wrq.rearranger.util.CommentUtil;
+import com.wrq.rearranger.util.SeparatorCommentScanner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a single rearrangement needs besides the file itself: the settings, the separator comment patterns
+ * derived from them, and the right margin and tab size used to fill generated comments.  A context is created for
+ * each rearrangement and never changes afterwards, so separate files can be rearranged at the same time.
+ */
+public final class RearrangementContext {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private final RearrangerSettings settings;
+
+	private final List<String> commentStrings;
+
+	private final SeparatorCommentScanner commentScanner;
+
+	private final int rightMargin;
+
+	private final int tabSize;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	public RearrangementContext(RearrangerSettings settings, int rightMargin, int tabSize) {
+		this.settings = settings;
+		this.rightMargin = rightMargin;
+		this.tabSize = tabSize;
+		commentStrings = Collections.unmodifiableList(CommentUtil.createCommentStrings(settings));
+		commentScanner = CommentUtil.createCommentScanner(settings, commentStrings);
+	}
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+	/**
+	 * @return scanner finding the separator comments to be removed from the existing text.
+	 */
+	public SeparatorCommentScanner getCommentScanner() {
+		return commentScanner;
+	}
+
+	/**
+	 * @return escaped expressions of all comments the rules may generate.
+	 */
+	public List<String> getCommentStrings() {
+		return commentStrings;
+	}
+
+	public int getRightMargin() {
+		return rightMargin;
+	}
+
+	public RearrangerSettings getSettings() {
+		return settings;
+	}
+
+	public int getTabSize() {
+		return tabSize;
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.rearrangement;
+
+import com.wrq.rearranger.entry.EntryKind;
+import com.wrq.rearranger.entry.RangeEntry;
+import com.wrq.rearranger.ruleinstance.IRuleInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prioritized rule instances, indexed by the kind of entry each rule can match.  Built once before matching begins,
+ * so that each entry is tested only against the rules which can possibly apply to it.
+ */
+class RuleMatcher {
+
+// ------------------------------ FIELDS ------------------------------
+
+	/**
+	 * for each entry kind (by index), the rule instances applicable to that kind, in priority order.
+	 */
+	private final IRuleInstance[][] ruleInstancesByKind;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	RuleMatcher(List<IRuleInstance> prioritizedRuleInstances) {
+		ruleInstancesByKind = new IRuleInstance[EntryKind.N_KINDS][];
+		for (int index = 0; index < EntryKind.N_KINDS; index++) {
+			int kind = 1 << index;
+			List<IRuleInstance> applicable = new ArrayList<IRuleInstance>(prioritizedRuleInstances.size());
+			for (IRuleInstance ruleInstance : prioritizedRuleInstances) {
+				if ((ruleInstance.getRule().getApplicableEntryKinds() & kind) != 0) {
+					applicable.add(ruleInstance);
+				}
+			}
+			ruleInstancesByKind[index] = applicable.toArray(new IRuleInstance[applicable.size()]);
+		}
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * @param entry entry to be matched.
+	 *
+	 * @return the highest priority rule instance whose rule matches the entry, or null if none matches.
+	 */
+	IRuleInstance findMatch(RangeEntry entry) {
+		for (IRuleInstance ruleInstance : ruleInstancesByKind[EntryKind.indexOf(entry.getEntryKind())]) {
+			if (ruleInstance.getRule().isMatch(entry)) {
+				return ruleInstance;
+			}
+		}
+		return null;
+	}
+
+}
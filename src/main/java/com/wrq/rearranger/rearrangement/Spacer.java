@@ -22,7 +22,7 @@
 package com.wrq.rearranger.rearrangement;
 
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.JavaElementVisitor;
 import com.intellij.psi.JavaRecursiveElementVisitor;
 import com.intellij.psi.PsiClass;
@@ -40,7 +40,10 @@ import com.intellij.psi.PsiWhiteSpace;
 import com.wrq.rearranger.settings.ForceBlankLineSetting;
 import com.wrq.rearranger.settings.RearrangerSettings;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.JOptionPane;
@@ -56,23 +59,40 @@ public class Spacer {
 
 	private PsiFile psiFile;
 
-	private Document document;
-
 	private RearrangerSettings settings;
 
 	private final char[] newlineChars;
 
 	private boolean changesMade;
 
-	private StringBuffer sb;
+	private StringBuilder sb;
 
+	/**
+	 * text of the file, against whose offsets all spacing adjustments are recorded.
+	 */
+	private final CharSequence documentText;
+
+	/**
+	 * whitespace elements whose text has been adjusted, by element.  Each holds its replacement text, so that the
+	 * respaced document is built in one sweep over the original text once all adjustments are known.
+	 */
 	private Map<PsiWhiteSpace, VirtualElement> virtualElements = new HashMap<>();
 
+	/**
+	 * newlines appended at the end of the document by adjustments which found no whitespace to change.
+	 */
+	private StringBuilder textAtEnd = new StringBuilder();
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
-	public Spacer(PsiFile psiFile, Document document, RearrangerSettings settings) {
+	/**
+	 * @param psiFile file to respace; need not be physical, so that text which has not yet been written to a document
+	 * can be respaced.
+	 * @param settings
+	 */
+	public Spacer(PsiFile psiFile, RearrangerSettings settings) {
 		this.psiFile = psiFile;
-		this.document = document;
+		documentText = psiFile.getViewProvider().getContents();
 		this.settings = settings;
 		changesMade = false;
 
@@ -99,19 +119,25 @@ public class Spacer {
 		logger.debug("After class close brace: " + settings.getAfterClassRBrace());
 
 		final int ROOM_FOR_EXPANSION = 100;
-		int maxSize = document.getTextLength() + ROOM_FOR_EXPANSION;
+		int maxSize = documentText.length() + ROOM_FOR_EXPANSION;
 
-		sb = new StringBuffer(maxSize);
+		sb = new StringBuilder(maxSize);
 	}
 
 // -------------------------- OTHER METHODS --------------------------
 
-	public boolean respace() {
-		sb.append(document.getText());
-
+	/**
+	 * Determines the respaced text of the file from its PSI.  Nothing is changed.
+	 *
+	 * @return true if the respaced text differs from the file text; it is then available from getRespacedText().
+	 */
+	public boolean computeRespacing() {
 		JavaElementVisitor visitor = new JavaRecursiveElementVisitor() {
 
-			private int bias;
+			/**
+			 * net number of newline characters inserted so far; used for logging only.
+			 */
+			private int netNewlines;
 
 			@Override
 			public void visitReferenceExpression(PsiReferenceExpression referenceExpression) {
@@ -120,6 +146,7 @@ public class Spacer {
 			@Override
 			public void visitFile(PsiFile psiFile) {
 				super.visitFile(psiFile);
+				applyAdjustments();
 				if (settings.getNewlinesAtEOF().isForce()) {
 					// remove all newlines at end of file, then append as many as are declared in configuration.
 					while (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
@@ -138,14 +165,13 @@ public class Spacer {
 				}
 
 				boolean anonymous = psiClass.getName() == null;
-				int oldbias = bias;
+				int oldNetNewlines = netNewlines;
 
 				try {
-					bias += adjustSpacing(
+					netNewlines += adjustSpacing(
 							psiClass.getLBrace(),
 							psiClass.getRBrace(),
-							settings.getAfterClassLBrace(),
-							bias
+							settings.getAfterClassLBrace()
 					);
 				} catch (BadPsiElement badPsiElement) {
 					handleBadPsiElementException(
@@ -154,15 +180,14 @@ public class Spacer {
 							psiClass
 					);
 				}
-				log(settings.getAfterClassLBrace(), psiClass.getName(), oldbias, bias);
+				log(settings.getAfterClassLBrace(), psiClass.getName(), oldNetNewlines, netNewlines);
 				super.visitClass(psiClass);
-				oldbias = bias;
+				oldNetNewlines = netNewlines;
 				try {
-					bias += adjustSpacing(
+					netNewlines += adjustSpacing(
 							psiClass.getRBrace(),
 							psiClass.getLBrace(),
-							settings.getBeforeClassRBrace(),
-							bias
+							settings.getBeforeClassRBrace()
 					);
 				} catch (BadPsiElement badPsiElement) {
 					handleBadPsiElementException(
@@ -171,7 +196,7 @@ public class Spacer {
 							psiClass
 					);
 				}
-				log(settings.getBeforeClassRBrace(), psiClass.getName(), oldbias, bias);
+				log(settings.getBeforeClassRBrace(), psiClass.getName(), oldNetNewlines, netNewlines);
 
 				if (anonymous) {
 					return;
@@ -187,13 +212,12 @@ public class Spacer {
 					lastClass = isLastMeaningfulElement(psiClass.getParent(), psiClass);
 				}
 				if (!lastClass) {
-					oldbias = bias;
+					oldNetNewlines = netNewlines;
 					try {
-						bias += adjustSpacing(
+						netNewlines += adjustSpacing(
 								psiClass.getRBrace(),
 								psiClass.getLBrace(),
-								settings.getAfterClassRBrace(),
-								bias
+								settings.getAfterClassRBrace()
 						);
 					} catch (BadPsiElement badPsiElement) {
 						handleBadPsiElementException(
@@ -202,7 +226,7 @@ public class Spacer {
 								psiClass
 						);
 					}
-					log(settings.getAfterClassRBrace(), psiClass.getName(), oldbias, bias);
+					log(settings.getAfterClassRBrace(), psiClass.getName(), oldNetNewlines, netNewlines);
 				} else {
 					logger.debug(
 							"class " +
@@ -236,7 +260,7 @@ public class Spacer {
 			}
 
 			private void visitBody(PsiMember psiMethod, PsiCodeBlock body) {
-				int oldbias;
+				int oldNetNewlines;
 				/**
 				 * if method has an empty body, do only the spacing before the opening brace and after the closing
 				 * brace.
@@ -253,13 +277,13 @@ public class Spacer {
 					element = element.getNextSibling();
 				}
 				if (!methodIsEmpty) {
-					oldbias = bias;
+					oldNetNewlines = netNewlines;
 					try {
-						bias += adjustSpacing(
-								body.getLBrace(), body.getRBrace(), settings.getBeforeMethodLBrace(), bias
+						netNewlines += adjustSpacing(
+								body.getLBrace(), body.getRBrace(), settings.getBeforeMethodLBrace()
 						);
-						bias += adjustSpacing(
-								body.getLBrace(), body.getRBrace(), settings.getAfterMethodLBrace(), bias
+						netNewlines += adjustSpacing(
+								body.getLBrace(), body.getRBrace(), settings.getAfterMethodLBrace()
 						);
 					} catch (BadPsiElement badPsiElement) {
 						handleBadPsiElementException(
@@ -268,12 +292,12 @@ public class Spacer {
 								psiMethod
 						);
 					}
-					log(settings.getAfterMethodLBrace(), psiMethod.getName(), oldbias, bias);
+					log(settings.getAfterMethodLBrace(), psiMethod.getName(), oldNetNewlines, netNewlines);
 					visitElement(psiMethod);
-					oldbias = bias;
+					oldNetNewlines = netNewlines;
 					try {
-						bias += adjustSpacing(
-								body.getRBrace(), body.getLBrace(), settings.getBeforeMethodRBrace(), bias
+						netNewlines += adjustSpacing(
+								body.getRBrace(), body.getLBrace(), settings.getBeforeMethodRBrace()
 						);
 					} catch (BadPsiElement badPsiElement) {
 						handleBadPsiElementException(
@@ -282,7 +306,7 @@ public class Spacer {
 								psiMethod
 						);
 					}
-					log(settings.getBeforeMethodRBrace(), psiMethod.getName(), oldbias, bias);
+					log(settings.getBeforeMethodRBrace(), psiMethod.getName(), oldNetNewlines, netNewlines);
 				} else {
 					logger.debug("method " + psiMethod.getName() + " is empty, no internal spacing changes");
 				}
@@ -301,13 +325,12 @@ public class Spacer {
 					lastMethod = isLastMeaningfulElement(owner, psiMethod);
 				}
 				if (!lastMethod) {
-					oldbias = bias;
+					oldNetNewlines = netNewlines;
 					try {
-						bias += adjustSpacing(
+						netNewlines += adjustSpacing(
 								body.getRBrace(),
 								body.getLBrace(),
-								settings.getAfterMethodRBrace(),
-								bias
+								settings.getAfterMethodRBrace()
 						);
 					} catch (BadPsiElement badPsiElement) {
 						handleBadPsiElementException(
@@ -316,7 +339,7 @@ public class Spacer {
 								psiMethod
 						);
 					}
-					log(settings.getAfterMethodRBrace(), psiMethod.getName(), oldbias, bias);
+					log(settings.getAfterMethodRBrace(), psiMethod.getName(), oldNetNewlines, netNewlines);
 				} else {
 					logger.debug(
 							"method " +
@@ -328,34 +351,34 @@ public class Spacer {
 
 			@Override
 			public void visitCodeBlock(PsiCodeBlock psiCodeBlock) {
-				int oldbias;
+				int oldNetNewlines;
 
 				if (!(psiCodeBlock.getParent() instanceof PsiMethod) &&
 						settings.isRemoveBlanksInsideCodeBlocks()) {
-					oldbias = bias;
+					oldNetNewlines = netNewlines;
 					try {
-						bias += adjustSpacing(psiCodeBlock.getLBrace(),
-								psiCodeBlock.getRBrace(), false, 0, bias
+						netNewlines += adjustSpacing(psiCodeBlock.getLBrace(),
+								psiCodeBlock.getRBrace(), false, 0
 						);
 					} catch (BadPsiElement badPsiElement) {
 						handleBadPsiElementException(badPsiElement,
 								"code block missing left brace.  Content follows:\n", psiCodeBlock
 						);
 					}
-					log("code block left brace", oldbias, bias);
+					log("code block left brace", oldNetNewlines, netNewlines);
 				}
 				super.visitCodeBlock(psiCodeBlock);
 				if (!(psiCodeBlock.getParent() instanceof PsiMethod) &&
 						settings.isRemoveBlanksInsideCodeBlocks()) {
-					oldbias = bias;
+					oldNetNewlines = netNewlines;
 					try {
-						bias += adjustSpacing(psiCodeBlock.getRBrace(), psiCodeBlock.getLBrace(), true, 0, bias);
+						netNewlines += adjustSpacing(psiCodeBlock.getRBrace(), psiCodeBlock.getLBrace(), true, 0);
 					} catch (BadPsiElement badPsiElement) {
 						handleBadPsiElementException(badPsiElement,
 								"code block missing right brace.  Content follows:\n", psiCodeBlock
 						);
 					}
-					log("code block right brace", oldbias, bias);
+					log("code block right brace", oldNetNewlines, netNewlines);
 				}
 			}
 
@@ -365,18 +388,23 @@ public class Spacer {
 		} catch (AbortRespacing ar) {
 			return false;
 		}
+		// inserted and removed blank lines may cancel out.
+		changesMade = changesMade && !StringUtil.equals(sb, documentText);
 		if (changesMade) {
 			logger.debug(
 					"changes made to document; old length=" +
-							document.getTextLength() + ", new=" + sb.length()
+							documentText.length() + ", new=" + sb.length()
 			);
-			logger.debug("old document is:\n" + document.getText());
+			logger.debug("old document is:\n" + documentText);
 			logger.debug("new document is:\n" + sb.toString());
-			document.replaceString(0, document.getTextLength(), sb.toString());
 		}
 		return changesMade;
 	}
 
+	public CharSequence getRespacedText() {
+		return sb;
+	}
+
 	/**
 	 * Determines if the psiElement (method or class) is last syntactic item in the owner class. If so, we don't want to
 	 * change spacing after right brace of psiElement; this spacing is overridden by the parent class's spacing before
@@ -411,41 +439,41 @@ public class Spacer {
 		return lastMethod;
 	}
 
-	private int adjustSpacing(PsiElement brace, PsiElement matchingBrace, ForceBlankLineSetting fbls, int bias)
+	private int adjustSpacing(PsiElement brace, PsiElement matchingBrace, ForceBlankLineSetting fbls)
 			throws BadPsiElement {
 		if (fbls.isForce()) {
-			return adjustSpacing(brace, matchingBrace, fbls.isBefore(), fbls.getBlankLineCount(), bias);
+			return adjustSpacing(brace, matchingBrace, fbls.isBefore(), fbls.getBlankLineCount());
 		} else {
 			return 0;
 		}
 	}
 
-	private void log(ForceBlankLineSetting fbls, String name, int oldbias, int bias) {
-		if (oldbias != bias) {
+	private void log(ForceBlankLineSetting fbls, String name, int oldNetNewlines, int netNewlines) {
+		if (oldNetNewlines != netNewlines) {
 			logger.debug(
 					fbls.getObjectName() +
 							" " +
 							name +
 							(fbls.isBefore() ? " before" : " after") +
 							(fbls.isOpenBrace() ? " left brace:" : " right brace:") +
-							(oldbias < bias ? " inserted " + (bias - oldbias)
-									: " removed " + (oldbias - bias)) + " newlines"
+							(oldNetNewlines < netNewlines ? " inserted " + (netNewlines - oldNetNewlines)
+									: " removed " + (oldNetNewlines - netNewlines)) + " newlines"
 			);
 		}
 	}
 
 	/**
 	 * Determine the number of blank lines actually occurring before or after the brace.  If this is not the desired
-	 * number, alter the whitespace before or after the brace to contain the desired number of blank lines.
+	 * number, record a replacement for the whitespace before or after the brace which contains the desired number of
+	 * blank lines.  The document text is not changed; replacements are applied by applyAdjustments().
 	 *
 	 * @param brace
 	 * @param before
 	 * @param nBlankLines
-	 * @param bias
 	 *
-	 * @return bias adjustment corresponding to number of newlines inserted or deleted
+	 * @return number of newlines inserted (positive) or deleted (negative)
 	 */
-	private int adjustSpacing(PsiElement brace, PsiElement matchingBrace, boolean before, int nBlankLines, int bias)
+	private int adjustSpacing(PsiElement brace, PsiElement matchingBrace, boolean before, int nBlankLines)
 			throws BadPsiElement {
 		int result = 0;
 		if (brace == null) {
@@ -456,20 +484,20 @@ public class Spacer {
 		/*
 		 * ensure that character at offset indicated by brace element is in fact a brace.
 		 */
-		int offset = brace.getTextRange().getStartOffset() + bias;
+		int offset = brace.getTextRange().getStartOffset();
 		int direction = before ? -1 : +1;
 		int count = 0;
-		char braceChar = sb.charAt(offset);
+		char braceChar = documentText.charAt(offset);
 		if (braceChar != '{' && braceChar != '}') {
 			int L = offset - 50;
 			int R = offset + 50;
 			if (L < 0) {
 				L = 0;
 			}
-			if (R > sb.length()) {
-				R = sb.length();
+			if (R > documentText.length()) {
+				R = documentText.length();
 			}
-			String context = sb.toString().substring(L, R);
+			String context = documentText.subSequence(L, R).toString();
 			throw new RuntimeException(
 					"adjustSpacing: char at offset " +
 							offset +
@@ -500,9 +528,9 @@ public class Spacer {
 		if (whiteSpace != null) {
 			virtualWhiteSpace = virtualElements.get(whiteSpace);
 			if (virtualWhiteSpace == null) {
-				virtualWhiteSpace = new VirtualElement((PsiWhiteSpace) whiteSpace, bias);
+				virtualWhiteSpace = new VirtualElement((PsiWhiteSpace) whiteSpace);
 			} else {
-				logger.debug("reusing virtualWhiteSpace, offset=" + virtualWhiteSpace.textOffset);
+				logger.debug("reusing virtualWhiteSpace, offset=" + virtualWhiteSpace.getTextOffset());
 			}
 			/*
 			 * now count the number of newlines.
@@ -518,7 +546,7 @@ public class Spacer {
 		/**
 		 * first count the number of existing blank lines.
 		 */
-		if (offset + direction >= sb.length()) {
+		if (offset + direction >= documentText.length()) {
 			logger.debug("at EOF, don't append any extra blank lines");
 			// we're at end of file.  Don't append any extra blank lines.
 			nBlankLines = 0;
@@ -550,75 +578,51 @@ public class Spacer {
 		if (desiredNewlineChars == count) {
 			return 0;
 		}
-		/*
-		 * determine end index of whitespace to be replaced.
-		 * keep trailing spaces/tabs.
-		 */
-		int endIndex;
-//        if (whiteSpace != null) // todo - try modifying the PSI tree
-//        {
-//            try
-//            {
-//                StringBuilder sbr = new StringBuilder(whiteSpace.getText());
-//                if (desiredNewlineChars > count) sbr.append(newlineChars, 0, desiredNewlineChars - count);
-//                else sbr.setLength(sbr.length() + desiredNewlineChars - count);
-//                PsiElement codeblk = factory.createCodeBlockFromText(sbr.toString(), element);
-//                whiteSpace.replace(codeblk.getFirstChild());
-//            }
-//            catch (IncorrectOperationException e)
-//            {
-//                e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
-//            }
-//        }
+		changesMade = true;
 		if (virtualWhiteSpace != null) {
+			/*
+			 * replace the whitespace up to and including its last newline character; keep trailing spaces/tabs.
+			 */
 			String s = virtualWhiteSpace.getText();
+			int endIndex;
 			for (endIndex = s.length() - 1; endIndex >= 0; endIndex--) {
 				if (s.charAt(endIndex) != ' ' &&
 						s.charAt(endIndex) != '\t') {
 					break;
 				}
 			} // now endIndex points to the last newline character in the whitespace.
-			offset = virtualWhiteSpace.getTextOffset();
-			endIndex += offset + 1;
-		} else {
-			offset = endIndex = sb.length();
-		}
-		try {
-			changesMade = true;
 			logger.debug(
-					"sb.replace(" +
-							offset +
-							"," +
-							endIndex + ") with " + desiredNewlineChars + " newline characters"
-			);
-			sb.replace(offset, endIndex, new String(newlineChars, 0, desiredNewlineChars));
-			result = desiredNewlineChars - (endIndex - offset);
-			// now update virtualWhiteSpace accordingly.
-			if (virtualWhiteSpace != null) {
-				offset -= virtualWhiteSpace.getTextOffset();
-				endIndex -= virtualWhiteSpace.getTextOffset();
-				StringBuffer vsb = new StringBuffer(virtualWhiteSpace.getText());
-				vsb.replace(offset, endIndex, new String(newlineChars, 0, desiredNewlineChars));
-				virtualWhiteSpace.setTextValue(vsb.toString());
-			}
-		} catch (StringIndexOutOfBoundsException si) {
-			throw new RuntimeException(
-					"sb.length()=" +
-							sb.length() +
-							", offset=" +
-							offset +
-							", before=" +
-							before +
-							", count=" +
-							count +
-							", desiredNewlineChars=" +
-							desiredNewlineChars +
-							", charAt offset=" + (offset < sb.length() ? "" + sb.charAt(offset) : "OOB"), si
+					"replace whitespace at " +
+							virtualWhiteSpace.getTextOffset() +
+							" up to " + (endIndex + 1) + " with " + desiredNewlineChars + " newline characters"
 			);
+			virtualWhiteSpace.setTextValue(new String(newlineChars, 0, desiredNewlineChars) + s.substring(endIndex + 1));
+			result = desiredNewlineChars - (endIndex + 1);
+		} else {
+			logger.debug("append " + desiredNewlineChars + " newline characters at end of document");
+			textAtEnd.append(newlineChars, 0, desiredNewlineChars);
+			result = desiredNewlineChars;
 		}
 		return result;
 	}
 
+	/**
+	 * Builds the respaced text in one sweep over the original document text, substituting the replacement text of each
+	 * adjusted whitespace element in offset order.
+	 */
+	private void applyAdjustments() {
+		List<VirtualElement> adjusted = new ArrayList<VirtualElement>(virtualElements.values());
+		adjusted.sort(Comparator.comparingInt(VirtualElement::getTextOffset));
+		int position = 0;
+		for (VirtualElement virtualElement : adjusted) {
+			sb.append(documentText, position, virtualElement.getTextOffset());
+			sb.append(virtualElement.getText());
+			position = virtualElement.getEndOffset();
+		}
+		sb.append(documentText, position, documentText.length());
+		sb.append(textAtEnd);
+	}
+
 	/**
 	 * Returns the leaf psiElement before or after the given element.
 	 *
@@ -664,12 +668,12 @@ public class Spacer {
 		throw new AbortRespacing();
 	}
 
-	private void log(String name, int oldbias, int bias) {
-		if (oldbias != bias) {
+	private void log(String name, int oldNetNewlines, int netNewlines) {
+		if (oldNetNewlines != netNewlines) {
 			logger.debug(
 					name +
-							(oldbias < bias ? " inserted " + (bias - oldbias)
-									: " removed " + (oldbias - bias)) + " newlines"
+							(oldNetNewlines < netNewlines ? " inserted " + (netNewlines - oldNetNewlines)
+									: " removed " + (oldNetNewlines - netNewlines)) + " newlines"
 			);
 		}
 	}
@@ -692,7 +696,8 @@ public class Spacer {
 
 	/**
 	 * When whiteSpace is changed based on contents of a PsiWhiteSpace element, we need to keep track of that so that if
-	 * a subsequent adjustment in spacing is based on that same element, we use the new whitespace value.
+	 * a subsequent adjustment in spacing is based on that same element, we use the new whitespace value.  Offsets are
+	 * those of the element in the original document text.
 	 */
 	private class VirtualElement {
 
@@ -702,16 +707,23 @@ public class Spacer {
 
 		private final int textOffset;
 
+		private final int endOffset;
+
 // --------------------------- CONSTRUCTORS ---------------------------
 
-		VirtualElement(PsiWhiteSpace whiteSpace, int bias) {
+		VirtualElement(PsiWhiteSpace whiteSpace) {
 			textValue = whiteSpace.getText();
-			textOffset = whiteSpace.getTextOffset() + bias;
+			textOffset = whiteSpace.getTextRange().getStartOffset();
+			endOffset = whiteSpace.getTextRange().getEndOffset();
 			virtualElements.put(whiteSpace, this);
 		}
 
 // --------------------- GETTER / SETTER METHODS ---------------------
 
+		public int getEndOffset() {
+			return endOffset;
+		}
+
 		public int getTextOffset() {
 			return textOffset;
 		}
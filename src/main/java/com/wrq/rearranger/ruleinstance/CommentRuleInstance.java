@@ -133,19 +133,22 @@ public abstract class CommentRuleInstance
 
 	@Override
 	public void emit(Emitter emitter) {
-		StringBuffer sb = emitter.getStringBuffer();
 		if (emit) {
 			// emit a comment.  Precede with a newline unless this is the first line of the file.
-			if (sb.length() > 0) {
-				sb.append('\n');
-				sb.append(commentRule.getExpandedCommentText());
+			if (emitter.length() > 0) {
+				emitter.append('\n');
+				emitter.append(commentRule.getExpandedCommentText(emitter.getContext()));
 			} else {
-				sb.append(commentRule.getExpandedCommentText());
-				sb.append('\n');
+				emitter.append(commentRule.getExpandedCommentText(emitter.getContext()));
+				emitter.append('\n');
 			}
 		}
 	}
 
+	@Override
+	public void finishMatching() {
+	}
+
 	@Override
 	public List<RangeEntry> getMatches() {
 		return new ArrayList<RangeEntry>();
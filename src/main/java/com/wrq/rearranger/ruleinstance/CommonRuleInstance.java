@@ -35,6 +35,8 @@ import com.wrq.rearranger.settings.attributeGroups.IRule;
 import java.awt.Font;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import javax.swing.JLabel;
@@ -53,6 +55,11 @@ public abstract class CommonRuleInstance
 
 	protected final List<RangeEntry> matchedItems;
 
+	/**
+	 * sort key of each entry added to matchedItems, until matching finishes; empty if the rule does not sort.
+	 */
+	private final List<String> sortKeys = new ArrayList<String>();
+
 	private Logger logger = Logger.getInstance(getClass());
 
 // --------------------------- CONSTRUCTORS ---------------------------
@@ -108,10 +115,9 @@ public abstract class CommonRuleInstance
 	public void addEntry(RangeEntry entry) {
 		if (rule instanceof CommonAttributes) {
 			SortOptions sortOptions = ((CommonAttributes) rule).getSortAttr();
-			insertionSort(entry, sortOptions);
-		} else {
-			matchedItems.add(entry);
+			sortKeys.add(sortOptions.generateSortString(entry));
 		}
+		matchedItems.add(entry);
 	}
 
 	@Override
@@ -141,6 +147,27 @@ public abstract class CommonRuleInstance
 		}
 	}
 
+	/**
+	 * Sorts the matching entries by the keys computed as they were added.  The sort is stable, so entries with equal
+	 * keys remain in the order encountered.
+	 */
+	@Override
+	public void finishMatching() {
+		if (sortKeys.size() > 1 && sortKeys.size() == matchedItems.size()) {
+			Integer[] order = new Integer[sortKeys.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, Comparator.comparing(sortKeys::get));
+			List<RangeEntry> entries = new ArrayList<RangeEntry>(matchedItems);
+			for (int i = 0; i < order.length; i++) {
+				matchedItems.set(i, entries.get(order[i]));
+			}
+			logger.debug("sorted " + order.length + " entries matching " + rule);
+		}
+		sortKeys.clear();
+	}
+
 	@Override
 	public List<RangeEntry> getMatches() {
 		return matchedItems;
@@ -162,29 +189,4 @@ public abstract class CommonRuleInstance
 		);
 	}
 
-// -------------------------- OTHER METHODS --------------------------
-
-	private void insertionSort(final RangeEntry newEntry, final SortOptions sortOptions) {
-		boolean inserted = false;
-		final String s = sortOptions.generateSortString(newEntry);
-		logger.debug("insertionSort: new entry=" + s);
-		int index = 0;
-		while (index < matchedItems.size()) {
-			final RangeEntry re = matchedItems.get(index);
-			final String res = sortOptions.generateSortString(re);
-			logger.debug("insertionSort: compare to " + res);
-			if (s.compareTo(res) < 0) {
-				logger.debug("insertionSort: insert at " + index);
-				matchedItems.add(index, newEntry);
-				inserted = true;
-				break;
-			}
-			index++;
-		}
-		if (!inserted) {
-			logger.debug("insertionSort: add " + s + " to end");
-			matchedItems.add(newEntry);
-		}
-	}
-
 }
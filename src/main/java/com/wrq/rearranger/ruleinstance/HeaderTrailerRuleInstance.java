@@ -78,6 +78,10 @@ public class HeaderTrailerRuleInstance
 		}
 	}
 
+	@Override
+	public void finishMatching() {
+	}
+
 	@Override
 	public List<RangeEntry> getMatches() {
 		List<RangeEntry> list = null;
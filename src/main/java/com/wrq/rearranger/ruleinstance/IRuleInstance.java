@@ -58,6 +58,12 @@ public interface IRuleInstance {
 	 */
 	void emit(Emitter emitter);
 
+	/**
+	 * Called once all items have been matched to rules, before any related items are rearranged.  Puts the matching
+	 * items in their final order.
+	 */
+	void finishMatching();
+
 	/**
 	 * @return list of items matching the rule in this instance.
 	 */
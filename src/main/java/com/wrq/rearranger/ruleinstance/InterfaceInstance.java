@@ -21,16 +21,22 @@
  */
 package com.wrq.rearranger.ruleinstance;
 
+import com.intellij.psi.PsiMethod;
 import com.wrq.rearranger.entry.MethodEntry;
 import com.wrq.rearranger.popup.IFilePopupEntry;
 import com.wrq.rearranger.rearrangement.Emitter;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.settings.CommentRule;
 import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.attributeGroups.InterfaceAttributes;
+import com.wrq.rearranger.util.SuperMethodCache;
 import java.awt.Font;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JLabel;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -44,6 +50,8 @@ public class InterfaceInstance
 // ------------------------------ FIELDS ------------------------------
 
 	// ------------------------------------------------------- FIELDS ------------------------------------------------------
+	private static final String[] INTERFACE_PLACEHOLDERS = {"%IF%"};
+
 	private String interfaceName;
 
 	private List<MethodEntry> methods;
@@ -111,11 +119,27 @@ public class InterfaceInstance
 				methods.add(entry);
 				break;
 			case InterfaceAttributes.METHOD_ORDER_INTERFACE_ORDER:
-				entry.insertInterfaceOrder(methods);
+				methods.add(entry);  // sorted by sortMethods()
 				break;
 		}
 	}
 
+	/**
+	 * Called once all methods have been added.  If methods are to appear in the order declared in the interface, look up
+	 * each method's offset in the interface once and sort on that; methods at the same offset remain in the order
+	 * encountered.
+	 */
+	void sortMethods() {
+		if (rule.getMethodOrder() != InterfaceAttributes.METHOD_ORDER_INTERFACE_ORDER || methods.size() < 2) {
+			return;
+		}
+		final Map<MethodEntry, Integer> offsets = new IdentityHashMap<MethodEntry, Integer>(methods.size());
+		for (MethodEntry method : methods) {
+			offsets.put(method, SuperMethodCache.getInstance().getOffsetInInterface((PsiMethod) method.getEnd()));
+		}
+		methods.sort(Comparator.comparingInt(offsets::get));
+	}
+
 	public void addToPopupTree(DefaultMutableTreeNode node, RearrangerSettings settings) {
 		/**
 		 * if we are supposed to show rules, create a node for the rule and put its contents below.
@@ -135,29 +159,28 @@ public class InterfaceInstance
 	}
 
 	void emit(Emitter emitter) {
-		StringBuffer sb = emitter.getStringBuffer();
-		String commentString = expandComment(rule.getPrecedingComment());
+		String commentString = expandComment(rule.getPrecedingComment(), emitter.getContext());
 		if (commentString.length() > 0) {
-			sb.append("\n");
-			sb.append(commentString);
+			emitter.append('\n');
+			emitter.append(commentString);
 		}
 		for (MethodEntry rangeEntry : methods) {
 			rangeEntry.emit(emitter);
 		}
-		commentString = expandComment(rule.getTrailingComment());
+		commentString = expandComment(rule.getTrailingComment(), emitter.getContext());
 		if (commentString.length() > 0) {
-			sb.append("\n");
-			sb.append(commentString);
+			emitter.append('\n');
+			emitter.append(commentString);
 		}
 	}
 
-	private String expandComment(CommentRule comment) {
+	private String expandComment(CommentRule comment, RearrangementContext context) {
 		if (comment == null || comment.getCommentText() == null) {
 			return "";
 		}
 		comment.setCommentFillString(rule.getCommentFillString());
-		String result = comment.getCommentText().replaceAll("%IF%", interfaceName);
-		result = rule.getCommentFillString().getExpandedCommentText(result);
+		String result = comment.getTemplate(INTERFACE_PLACEHOLDERS).render(interfaceName);
+		result = rule.getCommentFillString().getExpandedCommentText(result, context);
 		return result;
 	}
 
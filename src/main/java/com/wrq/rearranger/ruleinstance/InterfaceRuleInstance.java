@@ -30,8 +30,10 @@ import com.wrq.rearranger.settings.attributeGroups.IRule;
 import com.wrq.rearranger.settings.attributeGroups.InterfaceAttributes;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 
@@ -100,42 +102,31 @@ public class InterfaceRuleInstance
 			List<ClassContentsEntry> entries,
 			RearrangerSettings settings) {
 		/**
-		 * create a list of interface instances, one for each interface specified by any of the matched methods.
-		 * Alphabetize this list if specified.
+		 * create a list of interface instances, one for each interface specified by any of the matched methods, in order
+		 * encountered.  Alphabetize this list if specified.
 		 */
+		final InterfaceAttributes interfaceRule = (InterfaceAttributes) getRule();
+		Map<String, InterfaceInstance> instancesByName = new HashMap<String, InterfaceInstance>();
+		for (InterfaceInstance instance : interfaceInstances) {
+			instancesByName.put(instance.getInterfaceName(), instance);
+		}
 		for (RangeEntry re : matchedItems) {
 			MethodEntry me = (MethodEntry) re;
-			InterfaceInstance instance = null;
-			for (InterfaceInstance interfaceInstance : interfaceInstances) {
-				if (interfaceInstance.getInterfaceName().equals(me.getInterfaceName())) {
-					instance = interfaceInstance;
-				}
-			}
+			String interfaceName = me.getInterfaceName();
+			InterfaceInstance instance = instancesByName.get(interfaceName);
 			if (instance == null) {
-				final InterfaceAttributes interfaceRule = (InterfaceAttributes) getRule();
-				instance = new InterfaceInstance(me.getInterfaceName(), interfaceRule);
-				if (interfaceRule.isAlphabetize()) {
-					boolean inserted = false;
-					String s = instance.getInterfaceName();
-					ListIterator<InterfaceInstance> lii = interfaceInstances.listIterator();
-					while (lii.hasNext()) {
-						InterfaceInstance entry = lii.next();
-						final String ename = entry.getInterfaceName();
-						if (s.compareTo(ename) < 0) {
-							interfaceInstances.add(lii.nextIndex() - 1, instance);
-							inserted = true;
-							break;
-						}
-					}
-					if (!inserted) {
-						interfaceInstances.add(instance);
-					}
-				} else {
-					interfaceInstances.add(instance);
-				}
+				instance = new InterfaceInstance(interfaceName, interfaceRule);
+				instancesByName.put(interfaceName, instance);
+				interfaceInstances.add(instance);
 			}
 			instance.addMethod(me);
 		}
+		if (interfaceRule.isAlphabetize()) {
+			interfaceInstances.sort(Comparator.comparing(InterfaceInstance::getInterfaceName));
+		}
+		for (InterfaceInstance instance : interfaceInstances) {
+			instance.sortMethods();
+		}
 		MethodEntry.rearrangeRelatedItems(
 				entries,
 				this,
@@ -21,8 +21,8 @@
  */
 package com.wrq.rearranger.settings;
 
-import com.wrq.rearranger.RearrangerActionHandler;
 import com.wrq.rearranger.configuration.IntTextField;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.settings.attributeGroups.RegexUtil;
 import com.wrq.rearranger.util.CommentUtil;
 import com.wrq.rearranger.util.Constraints;
@@ -31,6 +31,9 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -53,6 +56,11 @@ public class CommentFillString {
 
 	private int fillWidth;
 
+	/**
+	 * expanded comment lines, valid for the width, tab size and fill string recorded with them.
+	 */
+	private transient volatile ExpandedLines expandedLines;
+
 // -------------------------- STATIC METHODS --------------------------
 
 	public static CommentFillString readExternal(final Element item) {
@@ -199,10 +207,25 @@ public class CommentFillString {
 		return cfsPanel;
 	}
 
-	public final String getExpandedCommentText(String commentText) {
-		int width = useProjectWidthForFill ? RearrangerActionHandler.getRightMargin() : fillWidth;
-		int tabSize = RearrangerActionHandler.getTabSize();
-		return CommentUtil.expandFill(commentText, width, tabSize, fillString);
+	public final String getExpandedCommentText(String commentText, RearrangementContext context) {
+		return getExpandedCommentText(commentText, context.getRightMargin(), context.getTabSize());
+	}
+
+	/**
+	 * Expands the %FS% keywords of the comment to fill its lines.
+	 *
+	 * @param commentText comment, possibly containing %FS% keywords.
+	 * @param rightMargin width to fill when the project width is used.
+	 * @param tabSize width of a leading tab character.
+	 */
+	public final String getExpandedCommentText(String commentText, int rightMargin, int tabSize) {
+		int width = useProjectWidthForFill ? rightMargin : fillWidth;
+		ExpandedLines lines = expandedLines;
+		if (lines == null || !lines.isFor(width, tabSize, fillString)) {
+			lines = new ExpandedLines(width, tabSize, fillString);
+			expandedLines = lines;
+		}
+		return CommentUtil.expandFill(commentText, width, tabSize, fillString, lines.lines);
 	}
 
 	/**
@@ -234,4 +257,52 @@ public class CommentFillString {
 		me.setAttribute("fillWidth", "" + fillWidth);
 	}
 
+// -------------------------- INNER CLASSES --------------------------
+
+	private static final class ExpandedLines {
+
+// ------------------------------ FIELDS ------------------------------
+
+		/**
+		 * maximum number of expanded lines held.
+		 */
+		private static final int MAX_LINES = 64;
+
+		private final int width;
+
+		private final int tabSize;
+
+		private final String fillString;
+
+		/**
+		 * expansions by line.  Lines are cached after placeholder substitution, so every interface name and every text
+		 * typed into a comment preview adds one; only the most recently used are kept.
+		 */
+		private final Map<String, String> lines = Collections.synchronizedMap(
+				new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+						return size() > MAX_LINES;
+					}
+
+				}
+		);
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+		ExpandedLines(int width, int tabSize, String fillString) {
+			this.width = width;
+			this.tabSize = tabSize;
+			this.fillString = fillString;
+		}
+
+// -------------------------- OTHER METHODS --------------------------
+
+		boolean isFor(int width, int tabSize, String fillString) {
+			return this.width == width && this.tabSize == tabSize && this.fillString.equals(fillString);
+		}
+
+	}
+
 }
@@ -21,14 +21,20 @@
  */
 package com.wrq.rearranger.settings;
 
+import com.intellij.application.options.CodeStyle;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.IPopupTreeRangeEntry;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.popup.IFilePopupEntry;
 import com.wrq.rearranger.popup.RearrangerTreeNode;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.CommentRuleInstanceFactory;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.settings.attributeGroups.AttributeGroup;
 import com.wrq.rearranger.settings.attributeGroups.RegexUtil;
+import com.wrq.rearranger.util.CommentTemplate;
 import com.wrq.rearranger.util.Constraints;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
@@ -90,6 +96,11 @@ public class CommentRule implements AttributeGroup, IPopupTreeRangeEntry, IFileP
 
 	private CommentFillString commentFillString;
 
+	/**
+	 * comment text parsed for the placeholders last asked for; reparsed whenever the text or placeholders change.
+	 */
+	private transient volatile CommentTemplate template;
+
 // -------------------------- STATIC METHODS --------------------------
 
 	public static CommentRule readExternal(final Element item) {
@@ -330,6 +341,20 @@ public class CommentRule implements AttributeGroup, IPopupTreeRangeEntry, IFileP
 		return commentText;
 	}
 
+	/**
+	 * @param placeholders placeholders to recognize in the comment text; should be a constant array of the caller.
+	 *
+	 * @return the comment text, parsed for the placeholders.
+	 */
+	public final CommentTemplate getTemplate(String[] placeholders) {
+		CommentTemplate result = template;
+		if (result == null || !result.isFor(commentText, placeholders)) {
+			result = new CommentTemplate(commentText, placeholders);
+			template = result;
+		}
+		return result;
+	}
+
 	public final int getEmitCondition() {
 		return emitCondition;
 	}
@@ -481,7 +506,16 @@ public class CommentRule implements AttributeGroup, IPopupTreeRangeEntry, IFileP
 		String s = commentText.trim();
 
 		if (commentFillString != null && !commentFillString.getFillString().isEmpty()) {
-			s = commentFillString.getExpandedCommentText(s);
+			/**
+			 * the popup is not tied to an editor; fill to the default code style margin.
+			 */
+			CodeStyleSettings codeStyleSettings = CodeStyle.getDefaultSettings();
+
+			s = commentFillString.getExpandedCommentText(
+					s,
+					codeStyleSettings.getDefaultRightMargin(),
+					codeStyleSettings.getTabSize(JavaFileType.INSTANCE)
+			);
 		}
 		return new JLabel(s);
 	}
@@ -538,6 +572,11 @@ public class CommentRule implements AttributeGroup, IPopupTreeRangeEntry, IFileP
 		return result;
 	}
 
+	@Override
+	public int getApplicableEntryKinds() {
+		return EntryKind.NONE; // comment rules match no entries.
+	}
+
 	@Override
 	public int getPriority() {
 		return -1;  // Comments never match anything, so any priority will do.
@@ -555,8 +594,8 @@ public class CommentRule implements AttributeGroup, IPopupTreeRangeEntry, IFileP
 
 // -------------------------- OTHER METHODS --------------------------
 
-	public final String getExpandedCommentText() {
-		return commentFillString.getExpandedCommentText(commentText);
+	public final String getExpandedCommentText(RearrangementContext context) {
+		return commentFillString.getExpandedCommentText(commentText, context);
 	}
 
 	private String getName() {
@@ -23,7 +23,9 @@ package com.wrq.rearranger.settings.atomicAttributes;
 
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
 import com.wrq.rearranger.util.Constraints;
+import com.wrq.rearranger.util.PatternCache;
 import java.awt.GridBagLayout;
+import java.util.regex.Pattern;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JPanel;
@@ -42,6 +44,11 @@ public abstract class StringAttribute extends AtomicAttribute {
 
 	private String expression;
 
+	/**
+	 * compiled form of expression; null until first needed, and reset whenever the expression changes.
+	 */
+	private Pattern pattern;
+
 	private boolean match;
 
 	private boolean invert;
@@ -65,6 +72,7 @@ public abstract class StringAttribute extends AtomicAttribute {
 
 	public void setExpression(final String expression) {
 		this.expression = expression;
+		pattern = null;
 	}
 
 	public JPanel getStringPanel() {
@@ -165,6 +173,7 @@ public abstract class StringAttribute extends AtomicAttribute {
 	protected void deepCopy(StringAttribute result) {
 		result.match = match;
 		result.expression = expression;
+		result.pattern = pattern;
 		result.invert = invert;
 	}
 
@@ -177,7 +186,13 @@ public abstract class StringAttribute extends AtomicAttribute {
 	}
 
 	public boolean isMatch(final String string) {
-		return !match || string.matches(expression) ^ invert;
+		if (!match) {
+			return true;
+		}
+		if (pattern == null) {
+			pattern = PatternCache.getPattern(expression);
+		}
+		return pattern.matcher(string).matches() ^ invert;
 	}
 
 	public void loadAttributes(final Element item) {
@@ -187,6 +202,7 @@ public abstract class StringAttribute extends AtomicAttribute {
 		Attribute attr = RearrangerSettingsImplementation.getAttribute(item, "pattern");
 
 		expression = attr == null ? "" : attr.getValue();
+		pattern = null;
 	}
 
 }
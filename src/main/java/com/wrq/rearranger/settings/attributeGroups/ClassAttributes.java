@@ -23,6 +23,7 @@ package com.wrq.rearranger.settings.attributeGroups;
 
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiJavaToken;
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.settings.CommentRule;
 import com.wrq.rearranger.settings.atomicAttributes.AbstractAttribute;
@@ -147,15 +148,21 @@ public class ClassAttributes extends CommonAttributes {
 
 // --------------------- Interface IRule ---------------------
 
+	@Override
+	public final int getApplicableEntryKinds() {
+		return EntryKind.OTHER;
+	}
+
 	@Override
 	public final boolean isMatch(RangeEntry entry) {
-		return entry.getEnd().getParent() instanceof PsiClass &&
+		return isModifierMatch(entry.getModifiers()) &&
+				abAttr.isMatch(entry.getModifiers()) &&
+				enumAttr.isMatch(entry.getModifiers()) &&
 				entry.getEnd() instanceof PsiJavaToken &&
+				entry.getEnd().getParent() instanceof PsiClass &&
 //               ((PsiJavaToken)entry.getEnd()).getTokenType() == PsiJavaToken.LBRACE &&
 				entry.getEnd().getText().equals("{") &&
-				super.isMatch(entry) &&
-				abAttr.isMatch(entry.getModifiers()) &&
-				enumAttr.isMatch(entry.getModifiers());
+				getNameAttr().isMatch(entry.getName());
 	}
 
 // -------------------------- OTHER METHODS --------------------------
@@ -21,6 +21,7 @@
  */
 package com.wrq.rearranger.settings.attributeGroups;
 
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.ruleinstance.DefaultRuleInstance;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
@@ -180,11 +181,14 @@ public abstract class CommonAttributes implements AttributeGroup, IPrioritizable
 		return new ArrayList<String>(1);
 	}
 
+	@Override
+	public int getApplicableEntryKinds() {
+		return EntryKind.ALL;
+	}
+
 	@Override
 	public boolean isMatch(RangeEntry rangeEntry) {
-		return plAttr.isMatch(rangeEntry.getModifiers()) &&
-				stAttr.isMatch(rangeEntry.getModifiers()) &&
-				fAttr.isMatch(rangeEntry.getModifiers()) &&
+		return isModifierMatch(rangeEntry.getModifiers()) &&
 				nameAttr.isMatch(rangeEntry.getName());
 	}
 
@@ -199,6 +203,20 @@ public abstract class CommonAttributes implements AttributeGroup, IPrioritizable
 		result.priority = priority;
 	}
 
+	/**
+	 * Tests only the protection level, static and final modifiers.  These are cheap bitmask tests, so subclasses
+	 * evaluate them before any regular expression or Psi-derived criteria.
+	 *
+	 * @param modifiers modifier flags of the entry.
+	 *
+	 * @return true if the modifiers satisfy this rule's common modifier criteria.
+	 */
+	final boolean isModifierMatch(final int modifiers) {
+		return plAttr.isMatch(modifiers) &&
+				stAttr.isMatch(modifiers) &&
+				fAttr.isMatch(modifiers);
+	}
+
 	public final FinalAttribute getfAttr() {
 		return fAttr;
 	}
@@ -21,6 +21,7 @@
  */
 package com.wrq.rearranger.settings.attributeGroups;
 
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.ruleinstance.DefaultRuleInstance;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
@@ -69,6 +70,11 @@ public class DefaultRule
 		return new ArrayList<String>(1);
 	}
 
+	@Override
+	public int getApplicableEntryKinds() {
+		return EntryKind.ALL;
+	}
+
 	@Override
 	public int getPriority() {
 		return -1;  // this rule matches every remaining entry, so must go last.
@@ -22,6 +22,7 @@
 package com.wrq.rearranger.settings.attributeGroups;
 
 import com.intellij.psi.PsiField;
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.settings.atomicAttributes.InitToAnonClassAttribute;
 import com.wrq.rearranger.settings.atomicAttributes.TransientAttribute;
@@ -189,14 +190,21 @@ public class FieldAttributes extends ItemAttributes {
 
 // --------------------- Interface IRule ---------------------
 
+	@Override
+	public int getApplicableEntryKinds() {
+		return EntryKind.FIELD;
+	}
+
 	@Override
 	public boolean isMatch(RangeEntry rangeEntry) {
+		final int modifiers = rangeEntry.getModifiers();
 		return rangeEntry.getEnd() instanceof PsiField &&
-				initToAnonClassAttr.isMatch(rangeEntry.getModifiers()) &&
-				transientAttr.isMatch(rangeEntry.getModifiers()) &&
-				volatileAttr.isMatch(rangeEntry.getModifiers()) &&
-				typeAttr.isMatch(rangeEntry.getType()) &&
-				super.isMatch(rangeEntry);
+				isModifierMatch(modifiers) &&
+				initToAnonClassAttr.isMatch(modifiers) &&
+				transientAttr.isMatch(modifiers) &&
+				volatileAttr.isMatch(modifiers) &&
+				getNameAttr().isMatch(rangeEntry.getName()) &&
+				typeAttr.isMatch(rangeEntry.getType());
 	}
 
 // -------------------------- OTHER METHODS --------------------------
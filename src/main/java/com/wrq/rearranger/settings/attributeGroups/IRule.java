@@ -62,6 +62,12 @@ public interface IRule {
 	 */
 	List<String> getOffendingPatterns(String pattern);
 
+	/**
+	 * @return mask of EntryKind constants identifying the kinds of entries this rule can possibly match.  Entries of
+	 * other kinds are never tested against the rule.
+	 */
+	int getApplicableEntryKinds();
+
 	// all rules have a priority; but some are not settable by the user.  Those that are user settable implement
 	// the marker interface IPrioritizableRule.
 	int getPriority();
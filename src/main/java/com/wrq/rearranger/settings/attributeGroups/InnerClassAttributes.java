@@ -24,6 +24,7 @@ package com.wrq.rearranger.settings.attributeGroups;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiJavaToken;
 import com.wrq.rearranger.ModifierConstants;
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.settings.atomicAttributes.AbstractAttribute;
 import com.wrq.rearranger.settings.atomicAttributes.EnumAttribute;
@@ -140,18 +141,27 @@ public final class InnerClassAttributes
 
 // --------------------- Interface IRule ---------------------
 
+	@Override
+	public int getApplicableEntryKinds() {
+		return EntryKind.OTHER;
+	}
+
 	@Override
 	public boolean isMatch(RangeEntry entry) {
+		final int modifiers = entry.getModifiers();
+		if ((modifiers & ModifierConstants.ENUM) != 0 &&
+				entry.getEnd().getParent() instanceof PsiClass) {
+			return true;
+		}
 //        return entry.getEnd() instanceof PsiClass   &&
 		// entry.getEnd() should be the LBrace of a class.
-		return entry.getEnd().getParent() instanceof PsiClass &&
-				(entry.getModifiers() & ModifierConstants.ENUM) != 0 ||
+		return isModifierMatch(modifiers) &&
+				abAttr.isMatch(modifiers) &&
+				enumAttr.isMatch(modifiers) &&
 				entry.getEnd() instanceof PsiJavaToken &&
-						//               ((PsiJavaToken)entry.getEnd()).getTokenType() == PsiJavaToken.LBRACE &&
-						entry.getEnd().getText().equals("{") &&
-						super.isMatch(entry) &&
-						abAttr.isMatch(entry.getModifiers()) &&
-						enumAttr.isMatch(entry.getModifiers());
+				//               ((PsiJavaToken)entry.getEnd()).getTokenType() == PsiJavaToken.LBRACE &&
+				entry.getEnd().getText().equals("{") &&
+				getNameAttr().isMatch(entry.getName());
 	}
 
 // -------------------------- OTHER METHODS --------------------------
@@ -21,8 +21,10 @@
  */
 package com.wrq.rearranger.settings.attributeGroups;
 
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.MethodEntry;
 import com.wrq.rearranger.entry.RangeEntry;
+import com.wrq.rearranger.rearrangement.RearrangementContext;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
 import com.wrq.rearranger.ruleinstance.InterfaceRuleInstance;
 import com.wrq.rearranger.settings.CommentFillString;
@@ -416,6 +418,11 @@ public class InterfaceAttributes implements AttributeGroup, IRestrictMethodExtra
 		return result;
 	}
 
+	@Override
+	public final int getApplicableEntryKinds() {
+		return EntryKind.INTERFACE_METHOD;
+	}
+
 	@Override
 	public final boolean isMatch(RangeEntry rangeEntry) {
 		if (rangeEntry instanceof MethodEntry) {
@@ -439,12 +446,12 @@ public class InterfaceAttributes implements AttributeGroup, IRestrictMethodExtra
 		}
 	}
 
-	public final String getExpandedPrecedingCommentText() {
-		return commentFillString.getExpandedCommentText(precedingComment.getCommentText());
+	public final String getExpandedPrecedingCommentText(RearrangementContext context) {
+		return commentFillString.getExpandedCommentText(precedingComment.getCommentText(), context);
 	}
 
-	public final String getExpandedTrailingCommentText() {
-		return commentFillString.getExpandedCommentText(trailingComment.getCommentText());
+	public final String getExpandedTrailingCommentText(RearrangementContext context) {
+		return commentFillString.getExpandedCommentText(trailingComment.getCommentText(), context);
 	}
 
 	public JPanel getInterfaceAttributes() {
@@ -24,6 +24,8 @@ package com.wrq.rearranger.settings.attributeGroups;
 import com.intellij.psi.PsiClassInitializer;
 import com.intellij.psi.PsiMethod;
 import com.wrq.rearranger.ModifierConstants;
+import com.wrq.rearranger.entry.EntryKind;
+import com.wrq.rearranger.entry.MethodEntry;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
 import com.wrq.rearranger.settings.atomicAttributes.AbstractAttribute;
@@ -535,19 +537,29 @@ public class MethodAttributes
 // End Methods of Interface AttributeGroup
 // Start Methods of Interface IRule
 
+	@Override
+	public final int getApplicableEntryKinds() {
+		return EntryKind.METHOD | EntryKind.INTERFACE_METHOD | EntryKind.INITIALIZER;
+	}
+
 	@Override
 	public final boolean isMatch(RangeEntry entry) {
+		/**
+		 * test cheap modifier bitmask criteria first, then regular expressions, then criteria requiring Psi access.
+		 */
+		final int modifiers = entry.getModifiers();
 		final boolean result = (entry.getEnd() instanceof PsiMethod ||
 				entry.getEnd() instanceof PsiClassInitializer) &&
-				super.isMatch(entry) &&
-				abstractAttr.isMatch(entry.getModifiers()) &&
-				overriddenAttr.isMatch(entry.getModifiers()) &&
-				overridingAttr.isMatch(entry.getModifiers()) &&
-				implementedAttr.isMatch(entry.getModifiers()) &&
-				implementingAttr.isMatch(entry.getModifiers()) &&
-				staticInitAttr.isMatch(entry.getModifiers()) &&
-				nativeAttr.isMatch(entry.getModifiers()) &&
-				syncAttr.isMatch(entry.getModifiers()) &&
+				isModifierMatch(modifiers) &&
+				abstractAttr.isMatch(modifiers) &&
+				overriddenAttr.isMatch(modifiers) &&
+				overridingAttr.isMatch(modifiers) &&
+				implementedAttr.isMatch(modifiers) &&
+				implementingAttr.isMatch(modifiers) &&
+				staticInitAttr.isMatch(modifiers) &&
+				nativeAttr.isMatch(modifiers) &&
+				syncAttr.isMatch(modifiers) &&
+				getNameAttr().isMatch(entry.getName()) &&
 				returnTypeAttr.isMatch(entry.getType()) &&
 				minParamsAttr.isMatch(entry.getEnd()) &&
 				maxParamsAttr.isMatch(entry.getEnd());
@@ -556,30 +568,34 @@ public class MethodAttributes
 		}
 		boolean typeResult = false;
 		if (isConstructorMethodType()) {
-			typeResult |= (entry.getModifiers() & ModifierConstants.CONSTRUCTOR) == ModifierConstants.CONSTRUCTOR;
+			typeResult |= (modifiers & ModifierConstants.CONSTRUCTOR) == ModifierConstants.CONSTRUCTOR;
+		}
+		if (isCanonicalMethodType()) {
+			typeResult |= (modifiers & ModifierConstants.CANONICAL) == ModifierConstants.CANONICAL;
+		}
+		if (isOtherMethodType()) {
+			typeResult |= (modifiers & ModifierConstants.OTHER_METHOD) == ModifierConstants.OTHER_METHOD;
 		}
-		if (isGetterSetterMethodType() &&
+		// the getter/setter test inspects the method body, so skip it if the method type already matched.
+		if (!typeResult &&
+				isGetterSetterMethodType() &&
 				entry.getEnd() instanceof PsiMethod) {
 			/**
 			 * determine if the method is a getter or setter according to this rule's specific
 			 * definition.
 			 */
-			boolean isGetter = MethodUtil.isGetter(
-					(PsiMethod) entry.getEnd(),
-					getterSetterDefinition
-			);
-			boolean isSetter = MethodUtil.isSetter(
-					(PsiMethod) entry.getEnd(),
-					getterSetterDefinition
-			);
+			boolean isGetter;
+			boolean isSetter;
+			if (entry instanceof MethodEntry) {
+				MethodEntry methodEntry = (MethodEntry) entry;
+				isGetter = methodEntry.isGetterFor(getterSetterDefinition);
+				isSetter = methodEntry.isSetterFor(getterSetterDefinition);
+			} else {
+				isGetter = MethodUtil.isGetter((PsiMethod) entry.getEnd(), getterSetterDefinition);
+				isSetter = MethodUtil.isSetter((PsiMethod) entry.getEnd(), getterSetterDefinition);
+			}
 			typeResult |= isGetter | isSetter;
 		}
-		if (isCanonicalMethodType()) {
-			typeResult |= (entry.getModifiers() & ModifierConstants.CANONICAL) == ModifierConstants.CANONICAL;
-		}
-		if (isOtherMethodType()) {
-			typeResult |= (entry.getModifiers() & ModifierConstants.OTHER_METHOD) == ModifierConstants.OTHER_METHOD;
-		}
 		typeResult ^= invertMethodType;
 		if (!constructorMethodType &&
 				!getterSetterMethodType &&
@@ -21,6 +21,7 @@
  */
 package com.wrq.rearranger.settings.attributeGroups;
 
+import com.wrq.rearranger.entry.EntryKind;
 import com.wrq.rearranger.entry.RangeEntry;
 import com.wrq.rearranger.ruleinstance.HeaderTrailerRuleInstance;
 import com.wrq.rearranger.ruleinstance.IRuleInstance;
@@ -62,6 +63,11 @@ public class TrailerRule
 		return new ArrayList<String>(1);
 	}
 
+	@Override
+	public int getApplicableEntryKinds() {
+		return EntryKind.ALL;
+	}
+
 	@Override
 	public int getPriority() {
 		return -1; // priority doesn't matter since header rules only match the one trailer entry (if it exists), and
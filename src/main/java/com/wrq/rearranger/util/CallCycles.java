@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Eliminates cycles from a call graph, so that the methods related by calls form a tree.  Cycles are confined to the
+ * strongly connected components of the graph, which are found in a single pass (Tarjan).  Each component containing a
+ * cycle is then walked depth-first from its member reached first, and calls to an already visited member are removed.
+ * <p/>
+ * Nodes are compared by identity.
+ *
+ * @param <T> type of the nodes (methods) of the call graph.
+ */
+public final class CallCycles<T> {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private final Function<T, Collection<T>> callees;
+
+	private final Map<T, Integer> indexes = new IdentityHashMap<T, Integer>();
+
+	private final Map<T, Integer> lowLinks = new IdentityHashMap<T, Integer>();
+
+	private final List<T> stack = new ArrayList<T>();
+
+	private final Set<T> onStack = newIdentitySet(16);
+
+	private final List<List<T>> cyclicComponents = new ArrayList<List<T>>();
+
+	/**
+	 * calls to be removed, as caller and callee pairs.
+	 */
+	private final List<T> removedCalls = new ArrayList<T>();
+
+// -------------------------- STATIC METHODS --------------------------
+
+	/**
+	 * Removes the calls closing cycles in the call graph.  The graph is not changed until all such calls have been
+	 * determined, so removeCall may modify the collections returned by callees.
+	 *
+	 * @param nodes nodes of the graph; searches begin in this order, so a cycle is broken at the call back into its
+	 * first node.
+	 * @param callees returns the nodes called by a node, in call order.
+	 * @param removeCall removes the call from the first node to the second.
+	 * @param <T> type of the nodes of the call graph.
+	 */
+	public static <T> void eliminateCycles(
+			Iterable<T> nodes, Function<T, Collection<T>> callees, BiConsumer<T, T> removeCall) {
+		CallCycles<T> cycles = new CallCycles<T>(callees);
+		for (T node : nodes) {
+			cycles.visit(node);
+		}
+		for (List<T> component : cycles.cyclicComponents) {
+			/**
+			 * the last member is the first one the search reached.
+			 */
+			T root = component.get(component.size() - 1);
+			Set<T> members = newIdentitySet(component.size());
+			members.addAll(component);
+			Set<T> visited = newIdentitySet(component.size());
+			visited.add(root);
+			cycles.breakCycles(root, members, visited);
+		}
+		for (int i = 0; i < cycles.removedCalls.size(); i += 2) {
+			removeCall.accept(cycles.removedCalls.get(i), cycles.removedCalls.get(i + 1));
+		}
+	}
+
+	private static <T> Set<T> newIdentitySet(int expectedSize) {
+		return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>(expectedSize * 2));
+	}
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	private CallCycles(Function<T, Collection<T>> callees) {
+		this.callees = callees;
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	private void visit(T node) {
+		if (indexes.containsKey(node)) {
+			return;
+		}
+		int index = indexes.size();
+		indexes.put(node, index);
+		lowLinks.put(node, index);
+		stack.add(node);
+		onStack.add(node);
+		for (T callee : callees.apply(node)) {
+			if (!indexes.containsKey(callee)) {
+				visit(callee);
+				lowLinks.put(node, Math.min(lowLinks.get(node), lowLinks.get(callee)));
+			} else if (onStack.contains(callee)) {
+				lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(callee)));
+			}
+		}
+		if (lowLinks.get(node).intValue() == index) {
+			List<T> component = new ArrayList<T>();
+			T member;
+			do {
+				member = stack.remove(stack.size() - 1);
+				onStack.remove(member);
+				component.add(member);
+			} while (member != node);
+			if (component.size() > 1 || callees.apply(node).contains(node)) {
+				cyclicComponents.add(component);
+			}
+		}
+	}
+
+	private void breakCycles(T current, Set<T> members, Set<T> visited) {
+		for (T callee : callees.apply(current)) {
+			if (!members.contains(callee)) {
+				continue;
+			}
+			if (visited.contains(callee)) {
+				removedCalls.add(current);
+				removedCalls.add(callee);
+			} else {
+				visited.add(callee);
+				breakCycles(callee, members, visited);
+			}
+		}
+	}
+
+}
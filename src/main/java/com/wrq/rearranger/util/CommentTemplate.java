@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A comment text parsed once into literal text and placeholder slots (like %MN%), so that it can be rendered for any
+ * number of entries in a single pass of appends.  Placeholder values are inserted literally.  Immutable.
+ */
+public final class CommentTemplate {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private final String text;
+
+	private final String[] placeholders;
+
+	/**
+	 * literal text preceding each slot; the last element follows the final slot.
+	 */
+	private final String[] literals;
+
+	/**
+	 * index into placeholders of the value to insert in each slot.
+	 */
+	private final int[] slots;
+
+	private final int literalLength;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	/**
+	 * @param text comment text.
+	 * @param placeholders placeholders recognized in the text; values are later supplied in the same order.
+	 */
+	public CommentTemplate(String text, String[] placeholders) {
+		this.text = text;
+		this.placeholders = placeholders;
+		List<String> literalList = new ArrayList<String>();
+		List<Integer> slotList = new ArrayList<Integer>();
+		int literalStart = 0;
+		int offset = text.indexOf('%');
+		while (offset >= 0) {
+			int placeholder = findPlaceholder(offset);
+			if (placeholder < 0) {
+				offset = text.indexOf('%', offset + 1);
+				continue;
+			}
+			literalList.add(text.substring(literalStart, offset));
+			slotList.add(placeholder);
+			literalStart = offset + placeholders[placeholder].length();
+			offset = text.indexOf('%', literalStart);
+		}
+		literalList.add(text.substring(literalStart));
+		literals = literalList.toArray(new String[literalList.size()]);
+		slots = new int[slotList.size()];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = slotList.get(i);
+		}
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		literalLength = length;
+	}
+
+	private int findPlaceholder(int offset) {
+		for (int i = 0; i < placeholders.length; i++) {
+			if (text.startsWith(placeholders[i], offset)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * @return true if this template was parsed from the given text with the given placeholders.
+	 */
+	public boolean isFor(String text, String[] placeholders) {
+		return this.placeholders == placeholders && this.text.equals(text);
+	}
+
+	/**
+	 * @param values one value for each placeholder, in the order the placeholders were given.
+	 *
+	 * @return comment text with every placeholder replaced by its value.
+	 */
+	public String render(String... values) {
+		if (slots.length == 0) {
+			return text;
+		}
+		StringBuilder sb = new StringBuilder(literalLength + slots.length * 16);
+		for (int i = 0; i < slots.length; i++) {
+			sb.append(literals[i]);
+			sb.append(values[slots[i]]);
+		}
+		sb.append(literals[slots.length]);
+		return sb.toString();
+	}
+
+}
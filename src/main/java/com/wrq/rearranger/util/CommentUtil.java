@@ -25,31 +25,66 @@ import com.wrq.rearranger.settings.RearrangerSettings;
 import com.wrq.rearranger.settings.attributeGroups.IRule;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class CommentUtil {
-
-// ------------------------------ FIELDS ------------------------------
-
-	private static CommentUtil singleton;
-
-	private final RearrangerSettings settings;
-
-	private List<String> commentStrings;
-
-	private List<Matcher> commentMatchers;
+/**
+ * Builds the separator comment patterns for a rearrangement and expands fill strings in generated comments.  Holds
+ * no state; every rearrangement keeps its own patterns in its {@link com.wrq.rearranger.rearrangement.RearrangementContext}.
+ */
+public final class CommentUtil {
 
 // -------------------------- STATIC METHODS --------------------------
 
-	public static List<String> getCommentStrings() {
-		return singleton.commentStrings;
+	/**
+	 * Collects the escaped comment expressions of every rule that generates a comment.
+	 *
+	 * @param settings configuration whose rules are examined.
+	 *
+	 * @return list of comment expressions, in rule order.
+	 */
+	public static List<String> createCommentStrings(RearrangerSettings settings) {
+		List<String> commentStrings = new ArrayList<String>();
+		for (IRule rule : settings.getClassOrderAttributeList()) {
+			rule.addCommentPatternsToList(commentStrings);
+		}
+		for (IRule rule : settings.getItemOrderAttributeList()) {
+			rule.addCommentPatternsToList(commentStrings);
+		}
+		settings.getExtractedMethodsSettings().addCommentPatternsToList(commentStrings);
+		return commentStrings;
 	}
 
-	public static List<Matcher> getCommentMatchers() {
-		return singleton.commentMatchers;
+	/**
+	 * Creates the scanner which detects existing separator comments: only the global comment pattern if one is
+	 * configured, otherwise one pattern per comment expression.
+	 *
+	 * @param settings configuration supplying the global comment pattern.
+	 * @param commentStrings comment expressions, as returned by {@link #createCommentStrings(RearrangerSettings)}.
+	 *
+	 * @return scanner for all separator comments; may be shared between threads.
+	 */
+	public static SeparatorCommentScanner createCommentScanner(
+			RearrangerSettings settings,
+			List<String> commentStrings) {
+		List<String> comments;
+		if (settings.getGlobalCommentPattern() != null && !settings.getGlobalCommentPattern().isEmpty()) {
+			// create only one Pattern for the global comment pattern.
+			comments = Collections.singletonList(settings.getGlobalCommentPattern());
+		} else {
+			comments = commentStrings;
+		}
+		List<Pattern> patterns = new ArrayList<Pattern>(comments.size());
+		List<String> requiredLiterals = new ArrayList<String>(comments.size());
+		for (String comment : comments) {
+			String body = getCommentBody(comment);
+			patterns.add(getPattern(body));
+			requiredLiterals.add(getRequiredLiteral(body));
+		}
+		return new SeparatorCommentScanner(patterns, requiredLiterals);
 	}
 
 	/**
@@ -62,9 +97,27 @@ public class CommentUtil {
 	 * @param fillString string containing characters to replicate as needed for fill. @return
 	 */
 	public static String expandFill(String comment, int width, int tabSize, String fillString) {
-		StringBuffer result = new StringBuffer(comment.length() * 2);
+		return expandFill(comment, width, tabSize, fillString, null);
+	}
+
+	/**
+	 * Expands the %FS% keywords of a comment, reusing the expansions of lines seen before.
+	 *
+	 * @param comment String containing comment; may contain zero or more %FS% keywords; may be multiline.
+	 * @param width desired column width of line.
+	 * @param tabSize
+	 * @param fillString string containing characters to replicate as needed for fill.
+	 * @param expandedLines expansions of lines containing %FS%, all made with this width, tab size and fill string;
+	 * new expansions are added.  May be null.
+	 */
+	public static String expandFill(
+			String comment,
+			int width,
+			int tabSize,
+			String fillString,
+			Map<String, String> expandedLines) {
+		StringBuilder result = new StringBuilder(comment.length() * 2);
 		int EOLindex = 0;
-		StringBuffer fillChars = new StringBuffer();
 
 		if (fillString.isEmpty()) {
 			fillString = " "; // fill with spaces if no pattern supplied
@@ -81,54 +134,17 @@ public class CommentUtil {
 
 			String str = comment.substring(EOLindex, index);
 
-			if (!str.isEmpty()) {
-				// count number of %FS% occurrences in the string.
-				int nFS = 0;
-				int offset = 0;
-				while ((offset = str.indexOf("%FS%", offset)) >= 0) {
-					nFS++;
-					offset += 4; // bump past %FS%
-				}
-				// determine line length excluding %FS% strings.  Don't count final newline character, if present.
-				int fixedLength = logicalLength(str, tabSize) - nFS * 4;
-				if (str.charAt(str.length() - 1) == '\n') {
-					fixedLength--;
-				}
-				// determine number of characters to fill
-				int fillLength = width - fixedLength;
-				int[] fillWidths = new int[nFS];
-				int maxFillWidth = 0;
-				// do no filling if the length of the comment is already the desired width (or greater).
-				if (fillLength > 0 && nFS > 0) {
-					int eachFill = fillLength / nFS;
-					int remainder = fillLength % nFS;
-					for (int i = 0; i < nFS; i++) {
-						// calculate fill widths for each %FS%.
-						// any remainder (fillLength % nFS) is distributed among the first %FS% fills.
-						fillWidths[i] = eachFill + (i < remainder ? 1 : 0);
-						maxFillWidth = Math.max(maxFillWidth, fillWidths[i]);
+			if (str.indexOf("%FS%") < 0) {
+				result.append(str);
+			} else {
+				String expanded = expandedLines == null ? null : expandedLines.get(str);
+				if (expanded == null) {
+					expanded = expandFillLine(str, width, tabSize, fillString);
+					if (expandedLines != null) {
+						expandedLines.put(str, expanded);
 					}
 				}
-				// get enough fill chars
-				fillChars.ensureCapacity(maxFillWidth);
-				while (fillChars.length() < maxFillWidth) {
-					fillChars.append(fillString);
-				}
-				// now do the expansion
-				offset = 0;
-				int previousOffset = 0;
-				int fillWidthIndex = 0;
-				while ((offset = str.indexOf("%FS%", offset)) >= 0) {
-					// copy everything from previousOffset to offset.
-					result.append(str, previousOffset, offset);
-					offset += 4; // bump past %FS%
-					previousOffset = offset;
-					// then expand the fill string to fillWidths[fillWidthIndex] characters and append it.
-					result.append(fillChars.toString(), 0, fillWidths[fillWidthIndex++]);
-					// todo - JDK 1.5, .append(fillChars, 0, width)
-				}
-				// copy everything from previousOffset to end of line, and append a new line.
-				result.append(str.substring(previousOffset));
+				result.append(expanded);
 			}
 			EOLindex = index;
 		}
@@ -136,6 +152,57 @@ public class CommentUtil {
 		return result.toString();
 	}
 
+	private static String expandFillLine(String str, int width, int tabSize, String fillString) {
+		StringBuilder result = new StringBuilder(width + 1);
+		// count number of %FS% occurrences in the string.
+		int nFS = 0;
+		int offset = 0;
+		while ((offset = str.indexOf("%FS%", offset)) >= 0) {
+			nFS++;
+			offset += 4; // bump past %FS%
+		}
+		// determine line length excluding %FS% strings.  Don't count final newline character, if present.
+		int fixedLength = logicalLength(str, tabSize) - nFS * 4;
+		if (str.charAt(str.length() - 1) == '\n') {
+			fixedLength--;
+		}
+		// determine number of characters to fill
+		int fillLength = width - fixedLength;
+		int[] fillWidths = new int[nFS];
+		int maxFillWidth = 0;
+		// do no filling if the length of the comment is already the desired width (or greater).
+		if (fillLength > 0) {
+			int eachFill = fillLength / nFS;
+			int remainder = fillLength % nFS;
+			for (int i = 0; i < nFS; i++) {
+				// calculate fill widths for each %FS%.
+				// any remainder (fillLength % nFS) is distributed among the first %FS% fills.
+				fillWidths[i] = eachFill + (i < remainder ? 1 : 0);
+				maxFillWidth = Math.max(maxFillWidth, fillWidths[i]);
+			}
+		}
+		// get enough fill chars
+		StringBuilder fillChars = new StringBuilder(maxFillWidth + fillString.length());
+		while (fillChars.length() < maxFillWidth) {
+			fillChars.append(fillString);
+		}
+		// now do the expansion
+		offset = 0;
+		int previousOffset = 0;
+		int fillWidthIndex = 0;
+		while ((offset = str.indexOf("%FS%", offset)) >= 0) {
+			// copy everything from previousOffset to offset.
+			result.append(str, previousOffset, offset);
+			offset += 4; // bump past %FS%
+			previousOffset = offset;
+			// then expand the fill string to fillWidths[fillWidthIndex] characters and append it.
+			result.append(fillChars, 0, fillWidths[fillWidthIndex++]);
+		}
+		// copy everything from previousOffset to end of line, and append a new line.
+		result.append(str, previousOffset, str.length());
+		return result.toString();
+	}
+
 	/**
 	 * Calculate the apparent length of a string if tabs are expanded. Leading tabs are no problem; embedded tabs would
 	 * be, if the %FS% fill string expansions are not multiples of "%FS%".length() == 4, because after expansion the
@@ -162,52 +229,15 @@ public class CommentUtil {
 		return result;
 	}
 
-// --------------------------- CONSTRUCTORS ---------------------------
-
-	public CommentUtil(RearrangerSettings settings) {
-		this.settings = settings;
-		createCommentPatternList();
-		createCommentMatcherList();
-		singleton = this;
-	}
-
-	private void createCommentPatternList() {
-		commentStrings = new ArrayList<String>();
-		for (IRule rule : settings.getClassOrderAttributeList()) {
-			rule.addCommentPatternsToList(commentStrings);
-		}
-		for (IRule rule : settings.getItemOrderAttributeList()) {
-			rule.addCommentPatternsToList(commentStrings);
-		}
-		settings.getExtractedMethodsSettings().addCommentPatternsToList(commentStrings);
-	}
-
-	private void createCommentMatcherList() {
-		if (settings.getGlobalCommentPattern() != null && !settings.getGlobalCommentPattern().isEmpty()) {
-			// create only one Matcher for the global comment pattern.
-			commentMatchers = new ArrayList<Matcher>(1);
-			commentMatchers.add(getMatcher(settings.getGlobalCommentPattern()));
-		} else {
-			commentMatchers = new ArrayList<Matcher>(commentStrings.size());
-			for (String comment : commentStrings) {
-				Matcher matcher = getMatcher(comment);
-
-				commentMatchers.add(matcher);
-			}
-		}
-	}
-
 	/**
-	 * Strips any "\n" patterns off the front and end of the comment; inserts "\n*" patterns at front and end of the
-	 * comment; and creates a Matcher for the comment.  This will ultimately match any sequence of blank lines
-	 * before/after the separator comment. Also ignores leading blanks after any newline character.
+	 * Strips any "\n" patterns off the front and end of the comment, and makes every intermediate "\n" also match
+	 * leading blanks on the following line.
 	 *
 	 * @param comment comment string, already 'escaped' so it is safe for literal matching
 	 *
-	 * @return matcher which will match that comment, ignoring any leading or trailing newline characters and any
-	 * leading space.
+	 * @return expression for the comment without leading or trailing newlines; may be empty.
 	 */
-	private Matcher getMatcher(String comment) {
+	private static String getCommentBody(String comment) {
 		StringBuffer sb = new StringBuffer(comment);
 		/**
 		 * remove any literal newline characters or escaped equivalent ('\n') at beginning of comment.
@@ -237,17 +267,126 @@ public class CommentUtil {
 			}
 			break;
 		}
-		if (sb.length() > 0) {
-			// now replace all intermediate newline characters with an expression to match leading spaces as well.
-			String intermediate = sb.toString().replaceAll("\\\\n", "\\\\n\\\\s*");
-			sb.replace(0, sb.length(), intermediate);
-			sb.insert(0, "([\\n\\s]*");
-			sb.append(")+[\\n\\s]*?\\n+");
-		} else {
-			sb.replace(0, sb.length(), "[\\n\\s]*?\\n+");
+		// now replace all intermediate newline characters with an expression to match leading spaces as well.
+		return sb.toString().replaceAll("\\\\n", "\\\\n\\\\s*");
+	}
+
+	/**
+	 * Surrounds the comment body with "\n*" patterns and creates a Pattern for it.  This will ultimately match any
+	 * sequence of blank lines before/after the separator comment.
+	 *
+	 * @param body comment expression as returned by {@link #getCommentBody(String)}.
+	 *
+	 * @return pattern which will match that comment, ignoring any leading or trailing newline characters and any
+	 * leading space.
+	 */
+	private static Pattern getPattern(String body) {
+		if (body.isEmpty()) {
+			return PatternCache.getPattern("[\\n\\s]*?\\n+");
 		}
-		Matcher matcher = Pattern.compile(sb.toString()).matcher("");
-		return matcher;
+		return PatternCache.getPattern("([\\n\\s]*" + body + ")+[\\n\\s]*?\\n+");
+	}
+
+	/**
+	 * Finds a string which every match of the expression must contain: the longest run of plain or escaped literal
+	 * characters outside of any group, character class or quantifier.  Conservative; whenever the expression uses
+	 * syntax that could make such a run optional or change how it matches, the empty string is returned.
+	 *
+	 * @param expression regular expression.
+	 *
+	 * @return required literal, or the empty string if none could be determined.
+	 */
+	static String getRequiredLiteral(String expression) {
+		if (expression.contains("(?")) {
+			return ""; // embedded flags may make matching case insensitive
+		}
+		String longest = "";
+		StringBuilder run = new StringBuilder();
+		int depth = 0;
+		boolean inClass = false;
+		for (int i = 0; i < expression.length(); i++) {
+			char c = expression.charAt(i);
+			if (inClass) {
+				if (c == '\\') {
+					i++;
+				} else if (c == '[') {
+					return ""; // nested classes, unions and intersections
+				} else if (c == ']') {
+					inClass = false;
+				}
+				continue;
+			}
+			boolean literal = false;
+			switch (c) {
+				case '\\':
+					if (++i == expression.length()) {
+						return "";
+					}
+					c = expression.charAt(i);
+					if (c == 't') {
+						c = '\t';
+						literal = true;
+					} else if ("\\[](){}.^$?*+|".indexOf(c) >= 0) {
+						literal = true;
+					} else if ("nrfsSdDwWbB".indexOf(c) < 0) {
+						return ""; // octal, hex, unicode, back reference, quotation etc.
+					}
+					break;
+				case '[':
+					inClass = true;
+					break;
+				case '(':
+					depth++;
+					break;
+				case ')':
+					depth--;
+					break;
+				case '|':
+					if (depth == 0) {
+						return "";
+					}
+					break;
+				case '?':
+				case '*':
+				case '+':
+				case '{':
+					// the preceding character is optional or repeated; it is not part of the required run.
+					if (run.length() > 0) {
+						run.setLength(run.length() - 1);
+					}
+					if (c == '{') {
+						int close = expression.indexOf('}', i);
+						if (close < 0) {
+							return "";
+						}
+						i = close;
+					}
+					break;
+				case '.':
+				case '^':
+				case '$':
+					break;
+				default:
+					literal = true;
+			}
+			if (literal && depth == 0) {
+				run.append(c);
+			} else {
+				if (run.length() > longest.length()) {
+					longest = run.toString();
+				}
+				run.setLength(0);
+			}
+		}
+		if (run.length() > longest.length()) {
+			longest = run.toString();
+		}
+		return longest;
+	}
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	private CommentUtil() {
 	}
 
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.util.DocumentUtil;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replaces a range of a document with new text by applying only the edits that turn the old text into the new text,
+ * rather than replacing the range wholesale.  The edits are found by a line diff of the text between the common prefix
+ * and suffix, and each changed run of lines is narrowed to the characters which actually differ.  A method moved by
+ * rearrangement becomes a deletion and an insertion; text which did not move is left untouched, so its PSI survives
+ * the reparse, and the undo stack records only the changed text.
+ */
+public final class DocumentEdits {
+
+// ------------------------------ FIELDS ------------------------------
+
+	/**
+	 * number of edits above which the document is put into bulk update mode while they are applied, so that listeners
+	 * (editors, highlighting) process one change instead of many.  Below it, bulk mode costs more than it saves.
+	 */
+	private static final int BULK_UPDATE_THRESHOLD = 100;
+
+// -------------------------- STATIC METHODS --------------------------
+
+	/**
+	 * Replace the text of the document between the given offsets with the new text.
+	 *
+	 * @param document document to change; must be called within a write action.
+	 * @param startOffset start of the range to replace.
+	 * @param endOffset end of the range to replace.
+	 * @param newText replacement text.
+	 *
+	 * @return true if the document was changed.
+	 */
+	public static boolean replace(
+			final Document document, int startOffset, int endOffset, CharSequence newText) {
+		final List<Edit> edits = computeEdits(
+				document.getImmutableCharSequence().subSequence(startOffset, endOffset),
+				newText,
+				startOffset
+		);
+		if (edits.isEmpty()) {
+			return false;
+		}
+		DocumentUtil.executeInBulk(
+				document, edits.size() > BULK_UPDATE_THRESHOLD, new Runnable() {
+
+					@Override
+					public void run() {
+						/**
+						 * apply from the end of the document backwards so that the offsets of edits not yet applied
+						 * remain valid.
+						 */
+						for (int i = edits.size() - 1; i >= 0; i--) {
+							Edit edit = edits.get(i);
+							document.replaceString(edit.startOffset, edit.endOffset, edit.replacement);
+						}
+					}
+
+				}
+		);
+		return true;
+	}
+
+	/**
+	 * @param oldText text being replaced.
+	 * @param newText replacement text.
+	 * @param base offset of oldText in the document.
+	 *
+	 * @return edits, in ascending and non-overlapping document offset order, which turn oldText into newText.
+	 */
+	static List<Edit> computeEdits(CharSequence oldText, CharSequence newText, int base) {
+		final int oldLength = oldText.length();
+		final int newLength = newText.length();
+		final int limit = Math.min(oldLength, newLength);
+		int prefix = 0;
+		while (prefix < limit && oldText.charAt(prefix) == newText.charAt(prefix)) {
+			prefix++;
+		}
+		if (prefix == oldLength && prefix == newLength) {
+			return Collections.emptyList();
+		}
+		int suffix = 0;
+		while (suffix < limit - prefix &&
+				oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+			suffix++;
+		}
+		int[] oldLines = getLineStarts(oldText, prefix, oldLength - suffix);
+		int[] newLines = getLineStarts(newText, prefix, newLength - suffix);
+		List<Edit> edits = new ArrayList<Edit>();
+		Diff.Change change = null;
+		if (oldLines.length > 1 && newLines.length > 1) {
+			try {
+				change = Diff.buildChanges(getLines(oldText, oldLines), getLines(newText, newLines));
+			} catch (FilesTooBigForDiffException e) {
+				change = null;
+			}
+		}
+		if (change == null) {
+			/**
+			 * one side is empty, or the diff was too expensive; replace everything between prefix and suffix.
+			 */
+			addEdit(edits, oldText, prefix, oldLength - suffix, newText, prefix, newLength - suffix, base);
+		}
+		for (; change != null; change = change.link) {
+			addEdit(
+					edits,
+					oldText,
+					oldLines[change.line0],
+					oldLines[change.line0 + change.deleted],
+					newText,
+					newLines[change.line1],
+					newLines[change.line1 + change.inserted],
+					base
+			);
+		}
+		return edits;
+	}
+
+	/**
+	 * Add an edit replacing the old text range with the new text range, narrowed to the characters which differ.
+	 */
+	private static void addEdit(
+			List<Edit> edits,
+			CharSequence oldText,
+			int oldStart,
+			int oldEnd,
+			CharSequence newText,
+			int newStart,
+			int newEnd,
+			int base) {
+		while (oldStart < oldEnd && newStart < newEnd && oldText.charAt(oldStart) == newText.charAt(newStart)) {
+			oldStart++;
+			newStart++;
+		}
+		while (oldStart < oldEnd && newStart < newEnd && oldText.charAt(oldEnd - 1) == newText.charAt(newEnd - 1)) {
+			oldEnd--;
+			newEnd--;
+		}
+		if (oldStart < oldEnd || newStart < newEnd) {
+			edits.add(new Edit(base + oldStart, base + oldEnd, newText.subSequence(newStart, newEnd).toString()));
+		}
+	}
+
+	/**
+	 * @return offsets at which each line of text between start and end begins, followed by end.  A line includes its
+	 * terminating newline character.
+	 */
+	private static int[] getLineStarts(CharSequence text, int start, int end) {
+		int count = 1;
+		for (int i = start; i < end - 1; i++) {
+			if (text.charAt(i) == '\n') {
+				count++;
+			}
+		}
+		if (start == end) {
+			count = 0;
+		}
+		int[] result = new int[count + 1];
+		int line = 0;
+		if (count > 0) {
+			result[line++] = start;
+		}
+		for (int i = start; i < end - 1; i++) {
+			if (text.charAt(i) == '\n') {
+				result[line++] = i + 1;
+			}
+		}
+		result[line] = end;
+		return result;
+	}
+
+	private static String[] getLines(CharSequence text, int[] lineStarts) {
+		String[] result = new String[lineStarts.length - 1];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = text.subSequence(lineStarts[i], lineStarts[i + 1]).toString();
+		}
+		return result;
+	}
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	private DocumentEdits() {
+	}
+
+// -------------------------- INNER CLASSES --------------------------
+
+	static final class Edit {
+
+		final int startOffset;
+
+		final int endOffset;
+
+		final String replacement;
+
+		Edit(int startOffset, int endOffset, String replacement) {
+			this.startOffset = startOffset;
+			this.endOffset = endOffset;
+			this.replacement = replacement;
+		}
+
+	}
+
+}
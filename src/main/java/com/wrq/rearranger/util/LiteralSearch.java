@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Determines which of a fixed set of literal strings occur in a text, examining each character of the text only once
+ * (Aho-Corasick automaton).  Immutable once built; may be shared between threads.
+ */
+public final class LiteralSearch {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private final int nLiterals;
+
+	/**
+	 * goto function of the automaton; state 0 is the root.
+	 */
+	private final List<Map<Character, Integer>> transitions = new ArrayList<Map<Character, Integer>>();
+
+	private final int[] failure;
+
+	/**
+	 * indexes of all literals ending in each state, including those reached by following failure links.
+	 */
+	private final int[][] outputs;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	/**
+	 * @param literals non-empty strings to search for; a literal is identified by its index in this list.
+	 */
+	public LiteralSearch(List<String> literals) {
+		nLiterals = literals.size();
+		List<List<Integer>> ownOutputs = new ArrayList<List<Integer>>();
+		transitions.add(new HashMap<Character, Integer>());
+		ownOutputs.add(new ArrayList<Integer>(1));
+		for (int i = 0; i < literals.size(); i++) {
+			String literal = literals.get(i);
+			int state = 0;
+			for (int j = 0; j < literal.length(); j++) {
+				Integer next = transitions.get(state).get(literal.charAt(j));
+				if (next == null) {
+					next = transitions.size();
+					transitions.add(new HashMap<Character, Integer>());
+					ownOutputs.add(new ArrayList<Integer>(1));
+					transitions.get(state).put(literal.charAt(j), next);
+				}
+				state = next;
+			}
+			ownOutputs.get(state).add(i);
+		}
+		failure = new int[transitions.size()];
+		outputs = new int[transitions.size()][];
+		outputs[0] = toArray(ownOutputs.get(0), null);
+		/**
+		 * breadth first, so that the failure state of every state is complete before it is needed.
+		 */
+		Queue<Integer> queue = new ArrayDeque<Integer>();
+		for (int child : transitions.get(0).values()) {
+			failure[child] = 0;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.remove();
+			outputs[state] = toArray(ownOutputs.get(state), outputs[failure[state]]);
+			for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+				int child = transition.getValue();
+				failure[child] = next(failure[state], transition.getKey());
+				queue.add(child);
+			}
+		}
+	}
+
+	private static int[] toArray(List<Integer> own, int[] inherited) {
+		int[] result = new int[own.size() + (inherited == null ? 0 : inherited.length)];
+		for (int i = 0; i < own.size(); i++) {
+			result[i] = own.get(i);
+		}
+		if (inherited != null) {
+			System.arraycopy(inherited, 0, result, own.size(), inherited.length);
+		}
+		return result;
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * Scans the text once.
+	 *
+	 * @param text text to search.
+	 *
+	 * @return set of the indexes of all literals occurring in the text.
+	 */
+	public BitSet findLiterals(CharSequence text) {
+		BitSet result = new BitSet(nLiterals);
+		int nFound = 0;
+		int state = 0;
+		for (int i = 0; i < text.length() && nFound < nLiterals; i++) {
+			state = next(state, text.charAt(i));
+			for (int literal : outputs[state]) {
+				if (!result.get(literal)) {
+					result.set(literal);
+					nFound++;
+				}
+			}
+		}
+		return result;
+	}
+
+	private int next(int state, char c) {
+		while (true) {
+			Integer next = transitions.get(state).get(c);
+			if (next != null) {
+				return next;
+			}
+			if (state == 0) {
+				return 0;
+			}
+			state = failure[state];
+		}
+	}
+
+}
@@ -85,16 +85,23 @@ public final class MethodUtil {
 		}
 
 		boolean nameOK = false, bodyOK = false;
+		/**
+		 * the name and body criteria may both compare the returned variable with the field name; determine that
+		 * comparison at most once.
+		 */
+		Boolean returnsField = null;
 		switch (gsd.getGetterNameCriterion()) {
 			case GetterSetterDefinition.GETTER_NAME_CORRECT_PREFIX:
 				nameOK = true;
 				break;
 			case GetterSetterDefinition.GETTER_NAME_MATCHES_FIELD:
-				final String nameFromBody = nameOfVariableReturnedInBody(i_method);
-				final String propertyName = propertyNameFromMethodTrail(i_methodNameTrail);
-				nameOK = nameFromBody.equals(fieldName(propertyName, i_method.getProject()));
+				returnsField = returnsField(i_method, i_methodNameTrail);
+				nameOK = returnsField;
 				break;
 		}
+		if (!nameOK) {
+			return false;
+		}
 		switch (gsd.getGetterBodyCriterion()) {
 			case GetterSetterDefinition.GETTER_BODY_IMMATERIAL:
 				bodyOK = true;
@@ -103,12 +110,16 @@ public final class MethodUtil {
 				bodyOK = methodContainsReturnStatementOnly(i_method);
 				break;
 			case GetterSetterDefinition.GETTER_BODY_RETURNS_FIELD:
-				final String nameFromBody = nameOfVariableReturnedInBody(i_method);
-				final String propertyName = propertyNameFromMethodTrail(i_methodNameTrail);
-				bodyOK = nameFromBody.equals(fieldName(propertyName, i_method.getProject()));
+				bodyOK = returnsField != null ? returnsField : returnsField(i_method, i_methodNameTrail);
 				break;
 		}
-		return nameOK && bodyOK;
+		return bodyOK;
+	}
+
+	private static boolean returnsField(PsiMethod i_method, String i_methodNameTrail) {
+		final String nameFromBody = nameOfVariableReturnedInBody(i_method);
+		final String propertyName = propertyNameFromMethodTrail(i_methodNameTrail);
+		return nameFromBody.equals(fieldName(propertyName, i_method.getProject()));
 	}
 
 	private static boolean nameIsWellFormed(String i_methodNameTrail) {
@@ -137,7 +148,7 @@ public final class MethodUtil {
 	private static String nameOfVariableReturnedInBody(PsiMethod i_method) {
 		final PsiStatement[] statements = i_method.getBody().getStatements();
 
-		if (nofStatements(i_method) == 0) {
+		if (statements.length == 0) {
 			return "";
 		}
 
@@ -155,10 +166,6 @@ public final class MethodUtil {
 		return returnValueText;
 	}
 
-	private static int nofStatements(PsiMethod i_method) {
-		return i_method.getBody().getStatements().length;
-	}
-
 	private static String propertyNameFromMethodTrail(String i_source) {
 		if (i_source.length() > 0) {
 			final String left = i_source.substring(0, 1).toLowerCase();
@@ -209,16 +216,17 @@ public final class MethodUtil {
 		if (i_methodNameTrail.length() == 0) {
 			return false;
 		}
+		final PsiStatement[] statements = i_method.getBody().getStatements();
 		/** if setter body is immaterial, it can be empty.  Otherwise, it must contain at least one statement. */
-		if (nofStatements(i_method) == 0 &&
+		if (statements.length == 0 &&
 				gsd.getSetterBodyCriterion() != GetterSetterDefinition.SETTER_BODY_IMMATERIAL) {
 			return false;
 		}
 
 		boolean nameOK = false, bodyOK = false;
 		PsiElement psiElement = null;
-		if (nofStatements(i_method) > 0) {
-			psiElement = i_method.getBody().getStatements()[nofStatements(i_method) - 1].getChildren()[0];
+		if (statements.length > 0) {
+			psiElement = statements[statements.length - 1].getFirstChild();
 		}
 		PsiAssignmentExpression assignment = null;
 		String lExpression = null;
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Holds compiled regular expressions so that equal expressions used by different rules share one Pattern, and each
+ * expression is compiled only once.  The cache is bounded; once it is full, the least recently used expression is
+ * discarded, so that expressions typed while editing the settings do not accumulate.
+ */
+public final class PatternCache {
+
+// ------------------------------ FIELDS ------------------------------
+
+	/**
+	 * maximum number of compiled expressions held.
+	 */
+	private static final int MAX_PATTERNS = 256;
+
+	private static final Map<String, Pattern> patterns = Collections.synchronizedMap(
+			new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+					return size() > MAX_PATTERNS;
+				}
+
+			}
+	);
+
+// -------------------------- STATIC METHODS --------------------------
+
+	/**
+	 * Returns the compiled form of the expression, compiling it on first use.
+	 *
+	 * @param expression regular expression.
+	 *
+	 * @return compiled pattern, shared with all other users of an equal expression.
+	 *
+	 * @throws java.util.regex.PatternSyntaxException if the expression is not a valid regular expression.
+	 */
+	public static Pattern getPattern(final String expression) {
+		return patterns.computeIfAbsent(expression, Pattern::compile);
+	}
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	private PatternCache() {
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes existing separator comments from the text of an entry.  Every comment pattern is paired with a literal which
+ * any match must contain; one scan of the text for all these literals tells which patterns can match at all, so only
+ * those are run.  Patterns are applied in order, exactly as if each were run over the text in turn.  Immutable; may be
+ * shared between threads.
+ */
+public final class SeparatorCommentScanner {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private static final Logger logger = Logger.getInstance(SeparatorCommentScanner.class);
+
+	private final Pattern[] patterns;
+
+	/**
+	 * for each pattern, the index of its required literal in literalSearch, or -1 if it has none and must always run.
+	 */
+	private final int[] literalIndexes;
+
+	private final LiteralSearch literalSearch;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+	/**
+	 * @param patterns separator comment patterns, in the order they are to be applied.
+	 * @param requiredLiterals for each pattern, a string contained in every match, or the empty string if unknown.
+	 */
+	SeparatorCommentScanner(List<Pattern> patterns, List<String> requiredLiterals) {
+		this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+		literalIndexes = new int[patterns.size()];
+		List<String> literals = new ArrayList<String>(patterns.size());
+		Map<String, Integer> literalIndexMap = new HashMap<String, Integer>();
+		for (int i = 0; i < literalIndexes.length; i++) {
+			String literal = requiredLiterals.get(i);
+			if (literal.isEmpty()) {
+				literalIndexes[i] = -1;
+				continue;
+			}
+			Integer index = literalIndexMap.get(literal);
+			if (index == null) {
+				index = literals.size();
+				literals.add(literal);
+				literalIndexMap.put(literal, index);
+			}
+			literalIndexes[i] = index;
+		}
+		literalSearch = new LiteralSearch(literals);
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	public boolean isEmpty() {
+		return patterns.length == 0;
+	}
+
+	/**
+	 * Replaces every separator comment found in the text.
+	 *
+	 * @param text text of an entry.
+	 * @param replacement text to substitute for each comment.
+	 *
+	 * @return text without separator comments; the same instance if none was found.
+	 */
+	public String removeComments(String text, String replacement) {
+		BitSet presentLiterals = literalSearch.findLiterals(text);
+		for (int i = 0; i < patterns.length; i++) {
+			if (literalIndexes[i] >= 0 && !presentLiterals.get(literalIndexes[i])) {
+				continue;
+			}
+			Matcher matcher = patterns[i].matcher(text);
+			if (matcher.find()) {
+				logger.debug("found comment pattern '" +
+						patterns[i].pattern().replaceAll("\n", "#") +
+						"' in '" +
+						text.replaceAll("\n", "#") +
+						"'");
+				StringBuffer sb = new StringBuffer(text.length());
+				do {
+					matcher.appendReplacement(sb, replacement);
+				} while (matcher.find());
+				matcher.appendTail(sb);
+				text = sb.toString();
+				/**
+				 * removing a comment joins the text around it, which may form a literal that was not there before;
+				 * search the remaining text again so later patterns see exactly what they would have seen.
+				 */
+				presentLiterals = literalSearch.findLiterals(text);
+			}
+		}
+		return text;
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2003, 2010, Dave Kriewall
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ * 1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ *
+ * 2) Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.wrq.rearranger.util;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.wrq.rearranger.ModifierConstants;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Application service remembering facts about a method's super methods: whether the method is canonical (inherited
+ * from Object), whether it overrides or implements another method, the name of the interface it implements, and its
+ * offset in that interface.  Determining these walks
+ * chains of super methods, and popular supertypes (Object, Runnable, common base classes) are reached from many
+ * methods in many files; each method's facts are computed once and reused until the PSI they derive from changes.
+ * <p/>
+ * Facts about methods in source are discarded when the project's PSI is modified; facts about compiled (library)
+ * methods, whose super methods are compiled too, are discarded when the project roots change.
+ */
+public final class SuperMethodCache {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private static final Logger logger = Logger.getInstance(SuperMethodCache.class);
+
+	private final Map<PsiMethod, Facts> facts = Collections.synchronizedMap(new WeakHashMap<PsiMethod, Facts>());
+
+// -------------------------- STATIC METHODS --------------------------
+
+	public static SuperMethodCache getInstance() {
+		return ApplicationManager.getApplication().getService(SuperMethodCache.class);
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	/**
+	 * @param method method
+	 *
+	 * @return ModifierConstants.CANONICAL if the method is inherited from Object, otherwise 0.
+	 */
+	public int getCanonical(PsiMethod method) {
+		return getFacts(method).canonical;
+	}
+
+	/**
+	 * @param method method
+	 *
+	 * @return ModifierConstants.IMPLEMENTING if the method's first super method is abstract or declared by an interface,
+	 * ModifierConstants.OVERRIDING if it has another super method, otherwise 0.
+	 */
+	public int getOverriding(PsiMethod method) {
+		return getFacts(method).overriding;
+	}
+
+	/**
+	 * @param method method
+	 *
+	 * @return name of an interface declaring a super method of the method, or null.
+	 */
+	public String getInterfaceName(PsiMethod method) {
+		return getFacts(method).interfaceName;
+	}
+
+	/**
+	 * @param method method
+	 *
+	 * @return text offset of the interface method the method implements (following the first super method of each
+	 * method), or 0 if none.
+	 */
+	public int getOffsetInInterface(PsiMethod method) {
+		return getFacts(method).offsetInInterface;
+	}
+
+	/**
+	 * Returns the facts about a method, determining them if they are not known or are out of date.  Facts are
+	 * immutable and published only once complete, so other threads never observe them partly determined; two threads
+	 * asking for the same method at once may both determine its facts, with the same result.
+	 */
+	private Facts getFacts(PsiMethod method) {
+		ModificationTracker tracker = method instanceof PsiCompiledElement
+				? ProjectRootModificationTracker.getInstance(method.getProject())
+				: PsiModificationTracker.getInstance(method.getProject());
+		long stamp = tracker.getModificationCount();
+		Facts result = facts.get(method);
+		if (result == null || result.stamp != stamp) {
+			result = determineFacts(method, stamp);
+			facts.put(method, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Walk the super methods in order.  An interface declaring a super method supplies the interface name, unless a
+	 * later one (or one found through a super method's own supers) replaces it; the walk ends when a method inherited
+	 * from Object is found.  The offset in the interface follows the first super method of each method.
+	 */
+	private Facts determineFacts(PsiMethod method, long stamp) {
+		PsiElement methodParent = method.getParent();
+		logger.debug("checking to see if " + method.getName() + " of " + methodParent + " is canonical");
+		PsiMethod[] superMethods = method.findSuperMethods();
+		logger.debug("result of findSuperMethods for " + method.getName() + ": size=" + superMethods.length);
+		int canonical = 0;
+		String interfaceName = null;
+		// check to see if this method is canonical (inherited from Object).
+		for (PsiMethod m : superMethods) {
+			PsiElement parent = m.getParent();
+			logger.debug(
+					"supermethod " +
+							m.getName() +
+							" belongs to " +
+							parent
+			);
+			if (parent instanceof PsiClass) {
+				PsiClass psiClass = (PsiClass) parent;
+
+				if (psiClass.isInterface()) {
+					logger.debug("method " + method.toString() + " implements interface");
+					interfaceName = psiClass.getName();
+				}
+
+				PsiElement superclass = psiClass.getSuperClass();
+
+				if (superclass == null) {
+					// m's class must be java.lang.Object; it's the only class with a null
+					// superclass.
+					logger.debug("method " + method.toString() + " is canonical");
+					canonical = ModifierConstants.CANONICAL;
+					break;
+				} else {
+					Facts superFacts = getFacts(m);
+					if (superFacts.interfaceName != null) {
+						interfaceName = superFacts.interfaceName;
+					}
+					if (superFacts.canonical > 0) {
+						logger.debug("Returning result from canonical check as " + superFacts.canonical);
+						canonical = superFacts.canonical;
+						break;
+					}
+				}
+			}
+		}
+		int overriding = 0;
+		int offsetInInterface = 0;
+		if (superMethods.length > 0) {
+			PsiMethod m = superMethods[0];
+			PsiClass superclass = m.getContainingClass();
+			boolean inInterface = superclass != null && superclass.isInterface();
+			// if the super method is abstract or declared by an interface, the method implements it.
+			overriding = inInterface || m.hasModifierProperty(PsiModifier.ABSTRACT)
+					? ModifierConstants.IMPLEMENTING
+					: ModifierConstants.OVERRIDING;
+			if (inInterface) {
+				offsetInInterface = m.getTextOffset();
+			} else {
+				offsetInInterface = getFacts(m).offsetInInterface;
+			}
+		}
+		return new Facts(stamp, canonical, overriding, interfaceName, offsetInInterface);
+	}
+
+// -------------------------- INNER CLASSES --------------------------
+
+	private static final class Facts {
+
+		private final long stamp;
+
+		private final int canonical;
+
+		private final int overriding;
+
+		private final String interfaceName;
+
+		private final int offsetInInterface;
+
+		Facts(long stamp, int canonical, int overriding, String interfaceName, int offsetInInterface) {
+			this.stamp = stamp;
+			this.canonical = canonical;
+			this.overriding = overriding;
+			this.interfaceName = interfaceName;
+			this.offsetInInterface = offsetInInterface;
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.wrq.rearranger.rearrangement;
+
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+import com.wrq.rearranger.settings.ForceBlankLineSetting;
+import com.wrq.rearranger.settings.RearrangerSettings;
+import com.wrq.rearranger.settings.RearrangerSettingsImplementation;
+
+public class SpacerTest extends LightJavaCodeInsightFixtureTestCase {
+
+// -------------------------- STATIC METHODS --------------------------
+
+	private static void force(ForceBlankLineSetting setting, boolean force, int blankLineCount) {
+		setting.setForce(force);
+		setting.setBlankLineCount(blankLineCount);
+	}
+
+	/**
+	 * @param force false if no spacing is to be changed at all.
+	 *
+	 * @return settings removing all blank lines after open braces and before close braces, and inside code blocks,
+	 * and ending the file with a single newline.
+	 */
+	private static RearrangerSettings createSpacingSettings(boolean force) {
+		RearrangerSettings settings = RearrangerSettingsImplementation.getDefaultSettings();
+
+		force(settings.getAfterClassLBrace(), force, 0);
+		force(settings.getAfterClassRBrace(), false, 0);
+		force(settings.getBeforeClassRBrace(), force, 0);
+		force(settings.getBeforeMethodLBrace(), false, 0);
+		force(settings.getAfterMethodLBrace(), force, 0);
+		force(settings.getAfterMethodRBrace(), false, 0);
+		force(settings.getBeforeMethodRBrace(), force, 0);
+		force(settings.getNewlinesAtEOF(), force, 1);
+		settings.setRemoveBlanksInsideCodeBlocks(force);
+		return settings;
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	@Override
+	protected String getTestDataPath() {
+		return "src/test/resources/com/wrq/rearranger";
+	}
+
+	public void testRespacingLeavesFileUnchanged() {
+		PsiFile psiFile = myFixture.configureByFile("SpaceTest1.java");
+		String originalText = psiFile.getText();
+		Spacer spacer = new Spacer(psiFile, createSpacingSettings(true));
+
+		assertTrue(spacer.computeRespacing());
+		assertFalse(originalText.equals(spacer.getRespacedText().toString()));
+		assertEquals(originalText, myFixture.getEditor().getDocument().getText());
+	}
+
+	public void testRespacedTextNeedsNoRespacing() {
+		PsiFile psiFile = myFixture.configureByFile("SpaceTest1.java");
+		RearrangerSettings settings = createSpacingSettings(true);
+		Spacer spacer = new Spacer(psiFile, settings);
+
+		assertTrue(spacer.computeRespacing());
+
+		PsiFile respacedFile = PsiFileFactory.getInstance(getProject()).createFileFromText(
+				psiFile.getName(), JavaLanguage.INSTANCE, spacer.getRespacedText(), false, false
+		);
+
+		assertFalse(new Spacer(respacedFile, settings).computeRespacing());
+	}
+
+	public void testNothingForced() {
+		PsiFile psiFile = myFixture.configureByFile("SpaceTest1.java");
+
+		assertFalse(new Spacer(psiFile, createSpacingSettings(false)).computeRespacing());
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.wrq.rearranger.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hamcrest.core.Is;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CallCyclesTest {
+
+// ------------------------------ FIELDS ------------------------------
+
+	private final Map<String, Set<String>> graph = new LinkedHashMap<String, Set<String>>();
+
+	private final List<String> removed = new ArrayList<String>();
+
+// -------------------------- OTHER METHODS --------------------------
+
+	@Test
+	public void testMutualRecursion() {
+		calls("a", "b");
+		calls("b", "a");
+
+		eliminateCycles("a", "b");
+
+		// the cycle is broken at the call back to the first node.
+		Assert.assertThat(removed, Is.is(Arrays.asList("b -> a")));
+		assertCalls("a", "b");
+	}
+
+	@Test
+	public void testSelfRecursion() {
+		calls("a", "a");
+		calls("a", "b");
+
+		eliminateCycles("a", "b");
+
+		Assert.assertThat(removed, Is.is(Arrays.asList("a -> a")));
+		assertCalls("a", "b");
+	}
+
+	@Test
+	public void testLongCycle() {
+		calls("a", "b");
+		calls("b", "c");
+		calls("c", "a");
+		calls("c", "d");
+
+		eliminateCycles("a", "b", "c", "d");
+
+		Assert.assertThat(removed, Is.is(Arrays.asList("c -> a")));
+		assertCalls("a", "b");
+		assertCalls("b", "c");
+		assertCalls("c", "d");
+	}
+
+	@Test
+	public void testAcyclicGraphUnchanged() {
+		calls("a", "b");
+		calls("a", "c");
+		calls("b", "c");
+
+		eliminateCycles("a", "b", "c");
+
+		Assert.assertThat(removed.isEmpty(), Is.is(true));
+		assertCalls("a", "b", "c");
+		assertCalls("b", "c");
+	}
+
+	private void calls(String caller, String callee) {
+		callees(caller).add(callee);
+		callees(callee);
+	}
+
+	private Set<String> callees(String node) {
+		Set<String> callees = graph.get(node);
+		if (callees == null) {
+			callees = new LinkedHashSet<String>();
+			graph.put(node, callees);
+		}
+		return callees;
+	}
+
+	private void eliminateCycles(String... nodes) {
+		CallCycles.<String>eliminateCycles(
+				Arrays.asList(nodes),
+				node -> graph.get(node),
+				(caller, callee) -> {
+					removed.add(caller + " -> " + callee);
+					graph.get(caller).remove(callee);
+				}
+		);
+	}
+
+	private void assertCalls(String caller, String... callees) {
+		Assert.assertThat(
+				caller, new ArrayList<String>(graph.get(caller)), Is.is(Arrays.asList(callees))
+		);
+	}
+
+}
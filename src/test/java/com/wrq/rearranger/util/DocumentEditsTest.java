@@ -0,0 +1,86 @@
+package com.wrq.rearranger.util;
+
+import java.util.List;
+
+import org.hamcrest.core.Is;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DocumentEditsTest {
+
+// -------------------------- STATIC METHODS --------------------------
+
+	/**
+	 * Applies the edits to the old text, checking that they are in ascending and non-overlapping offset order.
+	 */
+	private static String apply(String oldText, int base, List<DocumentEdits.Edit> edits) {
+		StringBuilder sb = new StringBuilder(oldText);
+		int previousStart = Integer.MAX_VALUE;
+		for (int i = edits.size() - 1; i >= 0; i--) {
+			DocumentEdits.Edit edit = edits.get(i);
+			Assert.assertTrue(edit.startOffset <= edit.endOffset);
+			Assert.assertTrue(edit.endOffset <= previousStart);
+			sb.replace(edit.startOffset - base, edit.endOffset - base, edit.replacement);
+			previousStart = edit.startOffset;
+		}
+		return sb.toString();
+	}
+
+// -------------------------- OTHER METHODS --------------------------
+
+	@Test
+	public void testIdenticalText() {
+		Assert.assertThat(DocumentEdits.computeEdits("a\nb\n", "a\nb\n", 0).isEmpty(), Is.is(true));
+	}
+
+	@Test
+	public void testMovedBlock() {
+		String oldText = "A\nB\nC\nD\nE\n";
+		String newText = "A\nD\nB\nC\nE\n";
+		List<DocumentEdits.Edit> edits = DocumentEdits.computeEdits(oldText, newText, 0);
+
+		Assert.assertThat(apply(oldText, 0, edits), Is.is(newText));
+		// the moved line becomes an insertion and a deletion; the lines around it are left untouched.
+		Assert.assertThat(edits.size(), Is.is(2));
+		for (DocumentEdits.Edit edit : edits) {
+			Assert.assertTrue(edit.startOffset >= 2);
+			Assert.assertTrue(edit.endOffset <= 8);
+		}
+	}
+
+	@Test
+	public void testEmptyOldText() {
+		List<DocumentEdits.Edit> edits = DocumentEdits.computeEdits("", "a\nb\n", 5);
+
+		Assert.assertThat(edits.size(), Is.is(1));
+		Assert.assertThat(edits.get(0).startOffset, Is.is(5));
+		Assert.assertThat(edits.get(0).endOffset, Is.is(5));
+		Assert.assertThat(edits.get(0).replacement, Is.is("a\nb\n"));
+	}
+
+	@Test
+	public void testEmptyNewText() {
+		List<DocumentEdits.Edit> edits = DocumentEdits.computeEdits("a\nb\n", "", 5);
+
+		Assert.assertThat(edits.size(), Is.is(1));
+		Assert.assertThat(edits.get(0).startOffset, Is.is(5));
+		Assert.assertThat(edits.get(0).endOffset, Is.is(9));
+		Assert.assertThat(edits.get(0).replacement, Is.is(""));
+	}
+
+	@Test
+	public void testPrefixAndSuffixOverlap() {
+		// the common prefix covers all of the shorter text; the suffix must not overlap it.
+		List<DocumentEdits.Edit> edits = DocumentEdits.computeEdits("aa", "aaa", 0);
+
+		Assert.assertThat(apply("aa", 0, edits), Is.is("aaa"));
+		Assert.assertThat(edits.size(), Is.is(1));
+		Assert.assertThat(edits.get(0).replacement, Is.is("a"));
+
+		edits = DocumentEdits.computeEdits("x\nx\nx\n", "x\n", 3);
+		Assert.assertThat(apply("x\nx\nx\n", 3, edits), Is.is("x\n"));
+		Assert.assertThat(edits.size(), Is.is(1));
+		Assert.assertThat(edits.get(0).endOffset - edits.get(0).startOffset, Is.is(4));
+	}
+
+}